@@ -0,0 +1,90 @@
+package com.reelview.app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Global token bucket shared by every segment fetch
+ * Readers pay for the bytes they received; a reader that overdraws the bucket sleeps until
+ * its debt is repaid. Debt accumulates in arrival order, so waiting readers are served
+ * first-come first-served and concurrent downloads split the budget evenly.
+ */
+public class BandwidthLimiter {
+    private static final long MIN_BURST_BYTES = 64 * 1024;
+
+    private long bytesPerSecond;
+    private long burstBytes;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond cap in bytes per second, 0 for unlimited
+     */
+    public BandwidthLimiter(long bytesPerSecond) {
+        setRate(bytesPerSecond);
+    }
+
+    /**
+     * Change the cap; takes effect for the next read
+     */
+    public synchronized void setRate(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+        // Allow a quarter second of burst so small reads do not each sleep
+        this.burstBytes = Math.max(MIN_BURST_BYTES, this.bytesPerSecond / 4);
+        this.tokens = Math.min(tokens, burstBytes);
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Charge bytes already read, blocking while the bucket is in debt
+     */
+    public void consume(int bytes) throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            if (bytesPerSecond <= 0 || bytes <= 0) return;
+            long now = System.nanoTime();
+            // In double: nanos times bytes per second overflows a long after minutes of idling
+            tokens = Math.min(burstBytes, tokens + (now - lastRefillNanos) / 1e9 * bytesPerSecond);
+            lastRefillNanos = now;
+            tokens -= bytes;
+            if (tokens >= 0) return;
+            waitNanos = (long) (-tokens * 1e9 / bytesPerSecond);
+        }
+        Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+    }
+
+    /**
+     * Wrap a source channel so every read is charged against this bucket
+     */
+    public ReadableByteChannel throttle(final ReadableByteChannel source) {
+        return new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                int n = source.read(dst);
+                try {
+                    consume(n);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttled");
+                }
+                return n;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return source.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                source.close();
+            }
+        };
+    }
+}
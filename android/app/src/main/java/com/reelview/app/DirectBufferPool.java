@@ -0,0 +1,56 @@
+package com.reelview.app;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Small pool of reusable direct ByteBuffers for segment I/O
+ * Direct buffers let FileChannel.write go straight to the kernel without the temporary
+ * native copy a heap buffer needs, and reusing them avoids per-segment allocation
+ */
+public class DirectBufferPool {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_POOLED = 8;
+
+    private static final DirectBufferPool shared = new DirectBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    public static DirectBufferPool getShared() {
+        return shared;
+    }
+
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Take a cleared buffer from the pool, allocating one if the pool is empty
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (free) {
+            buffer = free.poll();
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer; extras beyond the pool limit are left to the GC
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.capacity() != bufferSize) return;
+        synchronized (free) {
+            if (free.size() < maxPooled) {
+                free.push(buffer);
+            }
+        }
+    }
+}
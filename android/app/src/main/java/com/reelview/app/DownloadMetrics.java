@@ -0,0 +1,201 @@
+package com.reelview.app;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Network and processing counters for one download, safe to update from fetch workers
+ * Latencies go into log-scale histograms (four buckets per doubling, so a percentile is
+ * reported as its bucket's upper bound, within about 19%). Byte counts are taken on the wire
+ * and after decompression, which gives both the real network throughput and the bytes that
+ * gzip saved on playlist fetches.
+ */
+public class DownloadMetrics {
+
+    /**
+     * Millisecond latency histogram with fixed log-scale buckets
+     */
+    public static class LatencyHistogram {
+        private static final int BUCKETS_PER_DOUBLING = 4;
+        // Up to 2^21 ms (about 35 minutes); anything longer lands in the last bucket
+        private static final int BUCKETS = 21 * BUCKETS_PER_DOUBLING;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long totalMs;
+        private long maxMs;
+
+        public synchronized void record(long ms) {
+            ms = Math.max(0, ms);
+            counts[bucket(ms)]++;
+            count++;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given quantile (0..1), or 0 without samples
+         */
+        public synchronized long percentile(double quantile) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return Math.min(maxMs, upperBound(i));
+                }
+            }
+            return maxMs;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                .put("count", count)
+                .put("meanMs", count > 0 ? totalMs / count : 0)
+                .put("p50Ms", percentile(0.50))
+                .put("p95Ms", percentile(0.95))
+                .put("p99Ms", percentile(0.99))
+                .put("maxMs", maxMs);
+        }
+
+        private static int bucket(long ms) {
+            if (ms <= 1) return 0;
+            int index = (int) (Math.log(ms) / Math.log(2) * BUCKETS_PER_DOUBLING);
+            return Math.min(BUCKETS - 1, index);
+        }
+
+        private static long upperBound(int bucket) {
+            return (long) Math.ceil(Math.pow(2, (bucket + 1) / (double) BUCKETS_PER_DOUBLING));
+        }
+    }
+
+    public final LatencyHistogram segmentLatency = new LatencyHistogram();
+    public final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    public final LatencyHistogram playlistLatency = new LatencyHistogram();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong wireBytes = new AtomicLong();
+    private final AtomicLong decodedBytes = new AtomicLong();
+    private final AtomicLong compressedWireBytes = new AtomicLong();
+    private final AtomicLong compressedDecodedBytes = new AtomicLong();
+    private final AtomicLong decryptNanos = new AtomicLong();
+    private final AtomicLong mergeNanos = new AtomicLong();
+    private final AtomicLong remuxNanos = new AtomicLong();
+    private final AtomicLong convertNanos = new AtomicLong();
+    private final AtomicLong storeHits = new AtomicLong();
+    private final AtomicLong storeBytes = new AtomicLong();
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt = 0;
+
+    /**
+     * Account for one completed response
+     * @param wire bytes read from the socket
+     * @param decoded bytes after decompression (equal to wire when uncompressed)
+     */
+    public void recordTransfer(long wire, long decoded, boolean compressed) {
+        wireBytes.addAndGet(wire);
+        decodedBytes.addAndGet(decoded);
+        if (compressed) {
+            compressedWireBytes.addAndGet(wire);
+            compressedDecodedBytes.addAndGet(decoded);
+        }
+    }
+
+    public void recordRequest() {
+        requests.incrementAndGet();
+    }
+
+    public void recordRetry() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * Segments restored from the segment store instead of the network
+     */
+    public void recordStoreHit(int segments, long bytes) {
+        storeHits.addAndGet(segments);
+        storeBytes.addAndGet(bytes);
+    }
+
+    public void addDecryptTime(long nanos) {
+        decryptNanos.addAndGet(nanos);
+    }
+
+    public void addMergeTime(long nanos) {
+        mergeNanos.addAndGet(nanos);
+    }
+
+    public void addRemuxTime(long nanos) {
+        remuxNanos.addAndGet(nanos);
+    }
+
+    public void addConvertTime(long nanos) {
+        convertNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Freeze the elapsed time used for throughput once the download ends
+     */
+    public void finish() {
+        if (finishedAt == 0) {
+            finishedAt = System.nanoTime();
+        }
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    /**
+     * Average network throughput over the download so far, in megabits per second
+     */
+    public double getThroughputMbps() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        double seconds = (end - startedAt) / 1e9;
+        return seconds > 0 ? wireBytes.get() * 8 / seconds / 1000000.0 : 0;
+    }
+
+    /**
+     * Small subset sent with progress events
+     */
+    public JSONObject toSummaryJson() throws JSONException {
+        return new JSONObject()
+            .put("throughputMbps", round(getThroughputMbps()))
+            .put("segmentP95Ms", segmentLatency.percentile(0.95))
+            .put("ttfbP50Ms", timeToFirstByte.percentile(0.50))
+            .put("retries", retries.get())
+            .put("wireBytes", wireBytes.get());
+    }
+
+    public JSONObject toJson() throws JSONException {
+        return new JSONObject()
+            .put("throughputMbps", round(getThroughputMbps()))
+            .put("elapsedMs", ((finishedAt != 0 ? finishedAt : System.nanoTime()) - startedAt) / 1000000)
+            .put("requests", requests.get())
+            .put("retries", retries.get())
+            .put("wireBytes", wireBytes.get())
+            .put("decodedBytes", decodedBytes.get())
+            .put("compressionSavedBytes", Math.max(0, compressedDecodedBytes.get() - compressedWireBytes.get()))
+            .put("storeHits", storeHits.get())
+            .put("storeBytes", storeBytes.get())
+            .put("segmentLatency", segmentLatency.toJson())
+            .put("timeToFirstByte", timeToFirstByte.toJson())
+            .put("playlistLatency", playlistLatency.toJson())
+            .put("decryptMs", decryptNanos.get() / 1000000)
+            .put("mergeMs", mergeNanos.get() / 1000000)
+            .put("remuxMs", remuxNanos.get() / 1000000)
+            .put("convertMs", convertNanos.get() / 1000000);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
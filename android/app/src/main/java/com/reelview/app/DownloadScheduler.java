@@ -0,0 +1,170 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs downloads from a priority queue with a bounded number active at once
+ * Higher priority jobs start first, equal priorities start in submission order.
+ * Queued jobs hold no thread, wake lock or connection until a slot frees up.
+ */
+public class DownloadScheduler {
+    /**
+     * Told when the scheduler starts having work and when it has none left, running or queued
+     */
+    public interface Listener {
+        void onBusy();
+        void onIdle();
+    }
+
+    private static final String TAG = "DownloadScheduler";
+    public static final int DEFAULT_MAX_ACTIVE_JOBS = 2;
+    private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Job> queued = new ConcurrentHashMap<>();
+    private volatile Listener listener;
+    // Guarded by this
+    private int running = 0;
+    private boolean busy = false;
+
+    private class Job implements Runnable, Comparable<Job> {
+        final String id;
+        final int priority;
+        final long order;
+        final Runnable task;
+
+        Job(String id, int priority, Runnable task) {
+            this.id = id;
+            this.priority = priority;
+            this.order = sequence.getAndIncrement();
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            // Count the job as running before it leaves the queue so the scheduler never looks idle in between
+            jobStarted();
+            queued.remove(id);
+            Log.d(TAG, "Starting " + id + " (" + executor.getActiveCount() + " active, " + queued.size() + " queued)");
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Job " + id + " failed: " + e.getMessage(), e);
+            } finally {
+                jobFinished();
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+
+    public DownloadScheduler(int maxActiveJobs) {
+        int limit = Math.max(1, maxActiveJobs);
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = runnable -> new Thread(runnable, "DownloadThread-" + threadCount.incrementAndGet());
+        executor = new ThreadPoolExecutor(limit, limit, IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queue a download; it starts as soon as fewer than the maximum number of jobs are active
+     * @param priority higher values start first
+     */
+    public void submit(String id, int priority, Runnable task) {
+        Job job = new Job(id, priority, task);
+        queued.put(id, job);
+        executor.execute(job);
+        Log.d(TAG, "Queued " + id + " with priority " + priority);
+    }
+
+    /**
+     * Drop a job that has not started yet
+     * @return false if the job is unknown or already running
+     */
+    public boolean cancelQueued(String id) {
+        Job job = queued.remove(id);
+        boolean removed = job != null && executor.remove(job);
+        if (removed) {
+            checkIdle();
+        }
+        return removed;
+    }
+
+    public boolean isQueued(String id) {
+        return queued.containsKey(id);
+    }
+
+    /**
+     * Change how many downloads may run at once; running jobs are never interrupted
+     */
+    public synchronized void setMaxActiveJobs(int maxActiveJobs) {
+        int limit = Math.max(1, maxActiveJobs);
+        // Core size may never exceed the maximum, so order the two updates accordingly
+        if (limit > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(limit);
+            executor.setCorePoolSize(limit);
+        } else {
+            executor.setCorePoolSize(limit);
+            executor.setMaximumPoolSize(limit);
+        }
+        Log.d(TAG, "Max active downloads: " + limit);
+    }
+
+    public int getMaxActiveJobs() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return queued.size();
+    }
+
+    // Listener calls stay under the lock so a busy and an idle signal never arrive out of order
+    private synchronized void jobStarted() {
+        running++;
+        if (busy) return;
+        busy = true;
+        Listener l = listener;
+        if (l != null) {
+            l.onBusy();
+        }
+    }
+
+    private synchronized void jobFinished() {
+        running--;
+        checkIdle();
+    }
+
+    private synchronized void checkIdle() {
+        if (!busy || running > 0 || !queued.isEmpty()) return;
+        busy = false;
+        Listener l = listener;
+        if (l != null) {
+            l.onIdle();
+        }
+    }
+}
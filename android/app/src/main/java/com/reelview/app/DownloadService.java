@@ -0,0 +1,81 @@
+package com.reelview.app;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+
+/**
+ * Foreground service that keeps the process alive while downloads run
+ * It does no work of its own: the plugin starts it when its download scheduler becomes busy
+ * and stops it when the scheduler is idle, so the downloads stay on the scheduler's threads
+ * under its concurrency and bandwidth limits.
+ */
+public class DownloadService extends Service {
+    private static final String TAG = "DownloadService";
+    public static final String ACTION_KEEP_ALIVE = "KEEP_ALIVE";
+    private static final String CHANNEL_ID = "downloads";
+    private static final int NOTIFICATION_ID = 1001;
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Every start must reach startForeground, or Android 8+ kills the app shortly after
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, buildNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, buildNotification());
+        }
+        String action = intent != null ? intent.getAction() : null;
+        if (action != null && !ACTION_KEEP_ALIVE.equals(action)) {
+            // Downloads used to be started here; they are dispatched by the plugin's scheduler now
+            Log.w(TAG, "Ignoring action " + action + ", downloads are started by the plugin");
+        }
+        Log.d(TAG, "Holding foreground for running downloads");
+        // A restart without the plugin would show a notification with nothing running
+        return START_NOT_STICKY;
+    }
+
+    private Notification buildNotification() {
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
+            if (manager != null) {
+                manager.createNotificationChannel(
+                    new NotificationChannel(CHANNEL_ID, "Downloads", NotificationManager.IMPORTANCE_LOW));
+            }
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this);
+        }
+        Intent launch = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        if (launch != null) {
+            int flags = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+            builder.setContentIntent(PendingIntent.getActivity(this, 0, launch, flags));
+        }
+        return builder
+            .setContentTitle("ReelView")
+            .setContentText("Downloading in the background")
+            .setSmallIcon(android.R.drawable.stat_sys_download)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .build();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    @Override
+    public void onDestroy() {
+        stopForeground(true);
+        Log.d(TAG, "Released foreground");
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,180 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Append-only persistence for download records
+ * Every change appends one JSON line (an upsert, or a removal marker) instead of rewriting the whole
+ * download list, so the cost of a write does not grow with history. Loading keeps the last line per
+ * id and skips a torn line left by a crash. Once the log holds enough superseded lines it is
+ * compacted into a temp file that replaces the log with a rename.
+ */
+public class DownloadStateStore {
+    private static final String TAG = "DownloadStateStore";
+    private static final String REMOVED = "removed";
+    private static final int MIN_COMPACT_LINES = 64;
+
+    private final File file;
+    // Latest serialized line per id, in first-seen order; the compaction source
+    private final LinkedHashMap<String, String> records = new LinkedHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "DownloadStateWriter");
+        t.setDaemon(true);
+        return t;
+    });
+    private int logLines = 0;
+    private OutputStream out;
+
+    public DownloadStateStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Read the log; call once before the first put or remove
+     * @return records keyed by id in the order they were first written
+     */
+    public synchronized Map<String, JSONObject> load() {
+        Map<String, JSONObject> loaded = new LinkedHashMap<>();
+        records.clear();
+        logLines = 0;
+        boolean damaged = false;
+        if (file.exists()) {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    logLines++;
+                    JSONObject record;
+                    String id;
+                    try {
+                        record = new JSONObject(line);
+                        id = record.getString("id");
+                    } catch (Exception e) {
+                        // Torn write from a crash; everything before it is intact
+                        damaged = true;
+                        continue;
+                    }
+                    if (record.optBoolean(REMOVED)) {
+                        records.remove(id);
+                        loaded.remove(id);
+                    } else {
+                        records.put(id, line);
+                        loaded.put(id, record);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Error reading download log", e);
+                damaged = true;
+            }
+        }
+        if (damaged) {
+            // Rewrite so later appends never continue a partial line
+            writer.execute(this::compact);
+        }
+        Log.d(TAG, "Loaded " + loaded.size() + " downloads from " + logLines + " log entries");
+        return loaded;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Insert or replace one record; it must contain an "id"
+     */
+    public synchronized void put(String id, JSONObject record) {
+        String line = record.toString();
+        records.put(id, line);
+        append(line);
+    }
+
+    public synchronized void remove(String id) {
+        if (records.remove(id) == null) return;
+        try {
+            append(new JSONObject().put("id", id).put(REMOVED, true).toString());
+        } catch (Exception e) {
+            Log.e(TAG, "Error recording removal", e);
+        }
+    }
+
+    private void append(String line) {
+        logLines++;
+        final boolean compact = logLines > Math.max(MIN_COMPACT_LINES, records.size() * 2);
+        writer.execute(() -> {
+            if (compact) {
+                compact();
+            } else {
+                write(line);
+            }
+        });
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) {
+                out = new FileOutputStream(file, true);
+            }
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            ((FileOutputStream) out).getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending download record", e);
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Replace the log with one line per live record
+     */
+    private void compact() {
+        List<String> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records.values());
+            logLines = snapshot.size();
+        }
+        closeQuietly();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream compacted = new FileOutputStream(tmp)) {
+            StringBuilder content = new StringBuilder();
+            for (String line : snapshot) {
+                content.append(line).append('\n');
+            }
+            compacted.write(content.toString().getBytes(StandardCharsets.UTF_8));
+            compacted.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error compacting download log", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "Could not replace download log");
+            return;
+        }
+        Log.d(TAG, "Compacted download log to " + snapshot.size() + " entries");
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+}
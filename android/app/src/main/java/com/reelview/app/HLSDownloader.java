@@ -6,50 +6,134 @@ import android.os.Build;
 import android.os.Environment;
 import android.os.PowerManager;
 import android.util.Log;
-import android.webkit.CookieManager;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.zip.GZIPInputStream;
 
 /**
  * HLS Stream Downloader for Android
  * Uses WakeLock to prevent Doze mode from interrupting downloads
  * Includes quality estimation from bitrate analysis
+ * Safe to share between concurrent downloads: per-download state lives in each downloadStream call,
+ * while the host limits and bandwidth cap apply across all of them
  */
 public class HLSDownloader {
     private static final String TAG = "HLSDownloader";
-    private static final int BUFFER_SIZE = 8192;
     private static final int TIMEOUT = 30000;
+    private static final int DEFAULT_CONCURRENCY = 4;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    private static final long WAKE_LOCK_TIMEOUT_MS = 30 * 60 * 1000L;
+    private static final long LIVE_STALE_MIN_MS = 30000;
+    private static final String FFMPEG_PATH = "ffmpeg";
+    // Result of the one-time ffmpeg probe, shared by every instance; null until probed
+    private static Boolean ffmpegAvailable;
     private Context context;
-    private boolean ffmpegAvailable = false;
-    private String ffmpegPath = "";
-    private PowerManager.WakeLock wakeLock;
     
-    // Quality estimation fields
-    private double totalDuration = 0;
-    private String estimatedQuality = "";
-    private double bitrateMbps = 0;
+    // Segment fetch settings
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private HostLimiter hostLimiter = new HostLimiter(DEFAULT_MAX_REQUESTS_PER_HOST, 0);
+    private RetryPolicy retryPolicy = new RetryPolicy();
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter(0);
+    private long segmentStoreBytes = SegmentStore.DEFAULT_MAX_BYTES;
+    // Created on first download so construction stays free of disk access
+    private SegmentStore segmentStore;
+    
+    // Network throughput seen by the most recent download, used for "auto" variant selection
+    private volatile double measuredThroughputBps = 0;
 
     public HLSDownloader(Context context) {
         this.context = context;
-        checkFFmpegAvailability();
-        initializeWakeLock();
+        // Start reading the store's index now so the first download can already hit it
+        getSegmentStore();
+    }
+
+    /**
+     * Set how many segments are fetched in parallel
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Set per-host politeness limits: max parallel requests and minimum spacing between request starts
+     */
+    public void setPerHostLimits(int maxRequestsPerHost, long minIntervalMs) {
+        this.hostLimiter = new HostLimiter(maxRequestsPerHost, minIntervalMs);
+    }
+
+    /**
+     * Set the per-segment retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy != null ? retryPolicy : new RetryPolicy();
+    }
+
+    /**
+     * Cap the combined download rate of all running downloads
+     * @param bytesPerSecond cap in bytes per second, 0 for unlimited
+     */
+    public void setMaxBandwidth(long bytesPerSecond) {
+        bandwidthLimiter.setRate(bytesPerSecond);
+    }
+
+    public long getMaxBandwidth() {
+        return bandwidthLimiter.getRate();
+    }
+
+    /**
+     * Bound the on-disk segment store shared by all downloads
+     * @param maxBytes size limit in bytes, 0 to empty and disable it
+     */
+    public synchronized void setSegmentStoreSize(long maxBytes) {
+        segmentStoreBytes = Math.max(0, maxBytes);
+        if (segmentStore != null) {
+            segmentStore.setMaxBytes(segmentStoreBytes);
+        }
+    }
+
+    public synchronized long getSegmentStoreSize() {
+        return segmentStoreBytes;
+    }
+
+    /**
+     * Bytes currently held by the segment store, 0 when disabled, or -1 while its index is still loading
+     */
+    public long getSegmentStoreUsage() {
+        SegmentStore store = getSegmentStore();
+        return store != null ? store.getTotalBytes() : 0;
+    }
+
+    /**
+     * Shared segment store in the app cache directory, or null when disabled
+     */
+    private synchronized SegmentStore getSegmentStore() {
+        if (segmentStoreBytes <= 0) return null;
+        if (segmentStore == null) {
+            segmentStore = new SegmentStore(new File(context.getCacheDir(), "segments"), segmentStoreBytes,
+                SegmentStore.DEFAULT_MAX_AGE_MS);
+            segmentStore.loadAsync();
+        }
+        return segmentStore;
     }
 
     /**
-     * Initialize WakeLock to keep device awake during download
+     * Acquire a WakeLock that keeps the device awake for one download
      * Uses FULL_WAKE_LOCK to ensure CPU stays awake even in low-power modes
      */
-    private void initializeWakeLock() {
+    private PowerManager.WakeLock acquireWakeLock() {
         try {
             PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
             if (powerManager != null) {
@@ -67,24 +151,28 @@ public class HLSDownloader {
                     lockType |= PowerManager.ACQUIRE_CAUSES_WAKEUP;
                 }
                 
-                wakeLock = powerManager.newWakeLock(lockType, "reelview:download");
+                PowerManager.WakeLock wakeLock = powerManager.newWakeLock(lockType, "reelview:download");
                 
                 // Set timeout to 30 minutes max per download (prevent runaway)
                 // Downloads longer than this will need to manage their own WakeLock re-acquisition
-                wakeLock.acquire(30 * 60 * 1000L);
+                // Not reference counted, so a long recording can extend it by acquiring again
+                wakeLock.setReferenceCounted(false);
+                wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
                 
                 Log.d(TAG, "WakeLock acquired with flags: " + lockType);
+                return wakeLock;
             }
         } catch (Exception e) {
             Log.e(TAG, "Error initializing WakeLock: " + e.getMessage());
             // Proceed without WakeLock if there's an error
         }
+        return null;
     }
 
     /**
      * Release WakeLock when done
      */
-    private void releaseWakeLock() {
+    private void releaseWakeLock(PowerManager.WakeLock wakeLock) {
         try {
             if (wakeLock != null && wakeLock.isHeld()) {
                 wakeLock.release();
@@ -95,180 +183,410 @@ public class HLSDownloader {
         }
     }
 
-    private void checkFFmpegAvailability() {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("ffmpeg", "-version");
-            Process p = pb.start();
-            int exitCode = p.waitFor();
-            ffmpegAvailable = (exitCode == 0);
-            ffmpegPath = "ffmpeg";
-            Log.d(TAG, "FFmpeg available: " + ffmpegAvailable);
-        } catch (Exception e) {
-            Log.d(TAG, "FFmpeg not available (expected on Android)");
-            ffmpegAvailable = false;
+    /**
+     * Probe for an ffmpeg binary the first time a conversion needs it, then reuse the answer
+     * Spawning the process is slow, so it never runs at construction or on the main thread.
+     */
+    private static synchronized boolean isFFmpegAvailable() {
+        if (ffmpegAvailable == null) {
+            try {
+                ProcessBuilder pb = new ProcessBuilder(FFMPEG_PATH, "-version");
+                Process p = pb.start();
+                int exitCode = p.waitFor();
+                ffmpegAvailable = (exitCode == 0);
+                Log.d(TAG, "FFmpeg available: " + ffmpegAvailable);
+            } catch (Exception e) {
+                Log.d(TAG, "FFmpeg not available (expected on Android)");
+                ffmpegAvailable = false;
+            }
         }
+        return ffmpegAvailable;
     }
 
     /**
-     * Download content using WebView cookies and with WakeLock
+     * Fetch and parse a playlist using WebView cookies, streaming the body into the parser
      */
-    private String downloadContent(String urlString) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(TIMEOUT);
-        connection.setReadTimeout(TIMEOUT);
-        connection.setInstanceFollowRedirects(false);
-        
-        CookieManager cookieManager = CookieManager.getInstance();
-        String cookies = cookieManager.getCookie(urlString);
-        if (cookies != null) {
-            Log.d(TAG, "Adding cookies to request");
-            connection.setRequestProperty("Cookie", cookies);
-        }
-        
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-        connection.setRequestProperty("Accept", "*/*");
-        connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
-        connection.setRequestProperty("Accept-Language", "en-US,en;q=0.9");
-        connection.setRequestProperty("Connection", "keep-alive");
+    private HlsPlaylist fetchPlaylist(String urlString, DownloadMetrics metrics) throws IOException {
+        return fetchPlaylist(urlString, Long.MIN_VALUE, metrics);
+    }
+
+    /**
+     * Fetch a playlist, materializing only segments from {@code skipBelowSequence} on
+     */
+    private HlsPlaylist fetchPlaylist(String urlString, long skipBelowSequence, DownloadMetrics metrics) throws IOException {
+        HttpTransport.Request request = new HttpTransport.Request(urlString)
+            .timeout(TIMEOUT)
+            .acceptCompressed(true);
         
-        try {
-            int responseCode = connection.getResponseCode();
+        long requestStart = System.nanoTime();
+        metrics.recordRequest();
+        try (HttpTransport.Response response = HttpTransport.getShared().execute(request)) {
+            int responseCode = response.getStatusCode();
             Log.d(TAG, "Response code: " + responseCode);
             
-            // Handle redirects
-            if (responseCode == 301 || responseCode == 302) {
-                String location = connection.getHeaderField("Location");
-                if (location != null) {
-                    Log.d(TAG, "Following redirect");
-                    connection.disconnect();
-                    return downloadContent(location);
-                }
-            }
-            
             if (responseCode != 200 && responseCode != 206) {
-                throw new IOException("HTTP " + responseCode);
+                throw new HttpStatusException(responseCode);
             }
             
-            // Decompress if needed
-            InputStream inputStream = connection.getInputStream();
-            String contentEncoding = connection.getHeaderField("Content-Encoding");
-            
-            if ("gzip".equalsIgnoreCase(contentEncoding)) {
-                inputStream = new GZIPInputStream(inputStream);
+            long parseStart = System.nanoTime();
+            HlsPlaylist playlist = M3U8Parser.parse(response.body(), urlString, response.getUrl(), skipBelowSequence);
+            metrics.recordTransfer(response.getWireBytes(), response.getBodyBytes(), response.isCompressed());
+            metrics.playlistLatency.record((System.nanoTime() - requestStart) / 1000000);
+            Log.d(TAG, String.format("? Valid m3u8: %d variants, %d segments parsed in %.1f ms",
+                playlist.variants.size(), playlist.segments.size(), (System.nanoTime() - parseStart) / 1e6));
+            return playlist;
+        }
+    }
+
+    /**
+     * Download a segment into its part file, retrying per the retry policy.
+     * Bytes received by a failed attempt are kept and the next attempt continues with a Range request.
+     */
+    private long fetchSegmentWithRetry(String urlString, File target, HostLimiter limiter, RetryPolicy policy,
+            DownloadMetrics metrics) throws IOException, InterruptedException {
+        target.delete();
+        for (int attempt = 1; ; attempt++) {
+            IOException failure;
+            limiter.acquire(urlString);
+            try {
+                return downloadSegment(urlString, target, metrics);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                limiter.release(urlString);
             }
             
-            BufferedInputStream buffered = new BufferedInputStream(inputStream);
-            StringBuilder content = new StringBuilder();
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int nRead;
-            int totalBytes = 0;
-            
-            while ((nRead = buffered.read(buffer)) != -1) {
-                content.append(new String(buffer, 0, nRead, "UTF-8"));
-                totalBytes += nRead;
+            if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(failure)) {
+                throw failure;
             }
-            
-            buffered.close();
-            inputStream.close();
-            
-            String result = content.toString();
-            Log.d(TAG, "Downloaded " + totalBytes + " bytes");
-            
-            // Validate m3u8
-            if (result.contains("<!DOCTYPE") || result.contains("<html")) {
-                Log.e(TAG, "Got HTML instead of m3u8!");
-                throw new IOException("Server returned HTML instead of m3u8");
+            long delay = policy.backoffDelayMs(attempt, failure);
+            metrics.recordRetry();
+            Log.w(TAG, String.format("Segment attempt %d/%d failed (%s), retrying in %d ms with %d bytes kept",
+                attempt, policy.getMaxAttempts(), failure.getMessage(), delay, target.length()));
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Download binary segment straight to a part file through a pooled direct buffer
+     * If the part already holds bytes from an earlier attempt, only the remainder is requested
+     * and written at its position
+     * @return total length of the part file
+     */
+    private long downloadSegment(String urlString, File target, DownloadMetrics metrics) throws IOException {
+        HttpTransport.Request request = new HttpTransport.Request(urlString).timeout(TIMEOUT);
+        
+        long existing = target.exists() ? target.length() : 0;
+        if (existing > 0) {
+            request.header("Range", "bytes=" + existing + "-");
+        }
+        
+        long requestStart = System.nanoTime();
+        metrics.recordRequest();
+        try (HttpTransport.Response response = HttpTransport.getShared().execute(request)) {
+            metrics.timeToFirstByte.record((System.nanoTime() - requestStart) / 1000000);
+            int responseCode = response.getStatusCode();
+            if (responseCode == 416 && existing > 0) {
+                // Range no longer valid for this resource, retry the segment from the start
+                target.delete();
+                throw new IOException("Range not satisfiable, restarting segment");
             }
-            
-            if (result.length() < 50) {
-                throw new IOException("Response too short");
+            if (responseCode != 200 && responseCode != 206) {
+                throw new HttpStatusException(responseCode,
+                    HttpStatusException.parseRetryAfter(response.header("Retry-After")));
             }
             
-            if (!result.contains("#EXTM3U") && !result.contains("EXTINF")) {
-                throw new IOException("Invalid m3u8 format");
+            // A 200 means the server ignored our range: rewrite the part from the start
+            boolean append = existing > 0 && responseCode == 206;
+            if (append && rangeStart(response.header("Content-Range")) != existing) {
+                target.delete();
+                throw new IOException("Unexpected Content-Range, restarting segment");
+            }
+            long start = append ? existing : 0;
+            try (RandomAccessFile out = new RandomAccessFile(target, "rw");
+                 FileChannel channel = out.getChannel()) {
+                channel.truncate(start);
+                ReadableByteChannel source = bandwidthLimiter.throttle(Channels.newChannel(response.body()));
+                try {
+                    return start + SegmentIO.copy(source, channel, start, DirectBufferPool.getShared());
+                } finally {
+                    metrics.recordTransfer(response.getWireBytes(), response.getBodyBytes(), response.isCompressed());
+                    metrics.segmentLatency.record((System.nanoTime() - requestStart) / 1000000);
+                }
             }
-            
-            Log.d(TAG, "? Valid m3u8");
-            return result;
-            
-        } finally {
-            connection.disconnect();
         }
     }
 
     /**
-     * Download binary segment with WakeLock
+     * Fetch a group of segments into their part files, retrying per the retry policy
+     * A merged byte range is resumed from the first byte not yet on disk
      */
-    private byte[] downloadSegment(String urlString) throws IOException {
-        URL url = new URL(urlString);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(TIMEOUT);
-        connection.setReadTimeout(TIMEOUT);
-        
-        CookieManager cookieManager = CookieManager.getInstance();
-        String cookies = cookieManager.getCookie(urlString);
-        if (cookies != null) {
-            connection.setRequestProperty("Cookie", cookies);
+    private List<File> fetchGroupWithRetry(SegmentGroup group, SegmentFileWriter writer, List<HlsPlaylist.Segment> segments,
+            HostLimiter limiter, RetryPolicy policy, DownloadMetrics metrics) throws IOException, InterruptedException {
+        List<File> parts = new ArrayList<>(group.count);
+        for (int i = 0; i < group.count; i++) {
+            parts.add(writer.partFile(group.firstIndex + i));
+        }
+        if (!group.isByteRange()) {
+            fetchSegmentWithRetry(group.url, parts.get(0), limiter, policy, metrics);
+            return parts;
         }
         
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
-        connection.setRequestProperty("Accept", "*/*");
+        for (File part : parts) {
+            part.delete();
+        }
+        for (int attempt = 1; ; attempt++) {
+            IOException failure;
+            limiter.acquire(group.url);
+            try {
+                downloadRange(group, parts, segments, metrics);
+                return parts;
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                limiter.release(group.url);
+            }
+            
+            if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(failure)) {
+                throw failure;
+            }
+            long delay = policy.backoffDelayMs(attempt, failure);
+            metrics.recordRetry();
+            Log.w(TAG, String.format("Range attempt %d/%d for %d segments failed (%s), retrying in %d ms",
+                attempt, policy.getMaxAttempts(), group.count, failure.getMessage(), delay));
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Fill a group's part files from the segment store
+     * A byte-range group is restored only when every segment in it is stored, since the rest
+     * would cost the same single request anyway.
+     * @param store shared segment store, or null when not in use
+     * @return the restored parts, already decrypted, or null on a miss
+     */
+    private List<File> restoreGroup(SegmentGroup group, SegmentFileWriter writer, List<HlsPlaylist.Segment> segments,
+            SegmentStore store, DownloadMetrics metrics) {
+        if (store == null) return null;
+        List<File> parts = new ArrayList<>(group.count);
+        long restoredBytes = 0;
+        for (int i = 0; i < group.count; i++) {
+            File part = writer.partFile(group.firstIndex + i);
+            SegmentStore.Entry entry = store.get(SegmentStore.key(segments.get(group.firstIndex + i)));
+            // Parts restored before a miss are overwritten by the fetch
+            if (entry == null || !store.restore(entry, part)) return null;
+            parts.add(part);
+            restoredBytes += entry.length;
+        }
+        metrics.recordStoreHit(group.count, restoredBytes);
+        return parts;
+    }
+
+    /**
+     * Snapshot a finished part for the segment store: a hard link where possible, else a copy
+     * @return the snapshot, or null if none could be made
+     */
+    private static File stageSegment(File part, File stageDir, int index) {
+        if (!stageDir.exists() && !stageDir.mkdirs()) return null;
+        File staged = new File(stageDir, "seg_" + index + ".stage");
+        staged.delete();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            try {
+                Files.createLink(staged.toPath(), part.toPath());
+                return staged;
+            } catch (IOException | UnsupportedOperationException e) {
+                // FAT-formatted storage has no hard links; fall back to copying
+            }
+        }
+        try (FileInputStream in = new FileInputStream(part);
+             FileChannel source = in.getChannel();
+             FileOutputStream out = new FileOutputStream(staged);
+             FileChannel target = out.getChannel()) {
+            long length = source.size();
+            long transferred = 0;
+            while (transferred < length) {
+                long n = source.transferTo(transferred, length - transferred, target);
+                if (n <= 0) {
+                    throw new IOException("Short copy");
+                }
+                transferred += n;
+            }
+            return staged;
+        } catch (IOException e) {
+            Log.w(TAG, "Could not stage segment for the store: " + e.getMessage());
+            staged.delete();
+            return null;
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Download a merged byte range with one request, splitting the body into the group's part files as it streams
+     * Parts are filled in order, so the bytes already on disk tell where to resume
+     */
+    private void downloadRange(SegmentGroup group, List<File> parts, List<HlsPlaylist.Segment> segments,
+            DownloadMetrics metrics) throws IOException {
+        long received = 0;
+        for (File part : parts) {
+            received += part.length();
+        }
+        long start = group.offset + received;
+        long last = group.offset + group.length - 1;
+        HttpTransport.Request request = new HttpTransport.Request(group.url)
+            .timeout(TIMEOUT)
+            .header("Range", "bytes=" + start + "-" + last);
         
-        try {
-            int responseCode = connection.getResponseCode();
+        long requestStart = System.nanoTime();
+        metrics.recordRequest();
+        try (HttpTransport.Response response = HttpTransport.getShared().execute(request)) {
+            metrics.timeToFirstByte.record((System.nanoTime() - requestStart) / 1000000);
+            int responseCode = response.getStatusCode();
+            if (responseCode == 416) {
+                for (File part : parts) {
+                    part.delete();
+                }
+                throw new IOException("Range not satisfiable, restarting range");
+            }
             if (responseCode != 200 && responseCode != 206) {
-                throw new IOException("HTTP " + responseCode);
+                throw new HttpStatusException(responseCode,
+                    HttpStatusException.parseRetryAfter(response.header("Retry-After")));
             }
-            
-            InputStream inputStream = connection.getInputStream();
-            BufferedInputStream buffered = new BufferedInputStream(inputStream);
-            
-            java.io.ByteArrayOutputStream buffer = new java.io.ByteArrayOutputStream();
-            byte[] data = new byte[BUFFER_SIZE];
-            int nRead;
-            
-            while ((nRead = buffered.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
+            if (responseCode == 206 && rangeStart(response.header("Content-Range")) != start) {
+                for (File part : parts) {
+                    part.delete();
+                }
+                throw new IOException("Unexpected Content-Range, restarting range");
             }
             
-            buffered.close();
-            inputStream.close();
-            
-            return buffer.toByteArray();
-            
-        } finally {
-            connection.disconnect();
+            ReadableByteChannel source = bandwidthLimiter.throttle(Channels.newChannel(response.body()));
+            DirectBufferPool pool = DirectBufferPool.getShared();
+            ByteBuffer buffer = pool.acquire();
+            try {
+                // A server that ignores Range sends the whole resource: skip up to our range
+                if (responseCode == 200) {
+                    Log.w(TAG, "Server ignored Range, skipping " + start + " bytes");
+                    if (!SegmentIO.skip(source, start, buffer)) {
+                        throw new IOException("Resource shorter than its byte ranges");
+                    }
+                }
+                
+                long segmentStart = 0;
+                for (int i = 0; i < parts.size(); i++) {
+                    long segmentLength = segments.get(group.firstIndex + i).byteRangeLength;
+                    long segmentEnd = segmentStart + segmentLength;
+                    if (received < segmentEnd) {
+                        long from = received - segmentStart;
+                        try (RandomAccessFile out = new RandomAccessFile(parts.get(i), "rw");
+                             FileChannel channel = out.getChannel()) {
+                            channel.truncate(from);
+                            long copied = SegmentIO.copy(source, channel, from, segmentLength - from, buffer);
+                            received += copied;
+                            if (copied < segmentLength - from) {
+                                throw new IOException("Connection closed before range completed");
+                            }
+                        }
+                    }
+                    segmentStart = segmentEnd;
+                }
+            } finally {
+                pool.release(buffer);
+                metrics.recordTransfer(response.getWireBytes(), response.getBodyBytes(), response.isCompressed());
+                metrics.segmentLatency.record((System.nanoTime() - requestStart) / 1000000);
+            }
         }
     }
 
     /**
-     * Merge TS segments
+     * First byte position of a "Content-Range: bytes start-end/total" header, or -1
      */
-    private File mergeSegments(List<byte[]> segments, String outputPath) throws IOException {
-        File output = new File(outputPath);
-        try (FileOutputStream fos = new FileOutputStream(output);
-             BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-            
-            for (byte[] segment : segments) {
-                bos.write(segment);
+    private static long rangeStart(String contentRange) {
+        if (contentRange == null) return -1;
+        try {
+            int start = contentRange.indexOf(' ') + 1;
+            int dash = contentRange.indexOf('-', start);
+            return Long.parseLong(contentRange.substring(start, dash).trim());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Open the native remuxer, replaying the first {@code resumeBytes} of an existing transport stream
+     * @return the remuxer, or null if remuxing is not possible and the TS fallback should be used
+     */
+    private TsRemuxer startRemuxer(File mp4File, File tsFile, long resumeBytes) {
+        TsRemuxer remuxer = null;
+        try {
+            remuxer = new TsRemuxer(mp4File);
+            if (resumeBytes > 0) {
+                remuxer.feed(tsFile, resumeBytes);
+            }
+            return remuxer;
+        } catch (IOException e) {
+            Log.w(TAG, "Native remux unavailable: " + e.getMessage());
+            if (remuxer != null) {
+                remuxer.abort();
             }
-            bos.flush();
+            return null;
+        }
+    }
+
+    /**
+     * Pass a finished segment through the remuxer, dropping to the TS fallback on any failure
+     */
+    private TsRemuxer feedRemuxer(TsRemuxer remuxer, File part) {
+        if (remuxer == null) return null;
+        try {
+            remuxer.feed(part, -1);
+            if (remuxer.hasUnsupportedTracks()) {
+                Log.w(TAG, "Stream has codecs the native remuxer cannot handle, keeping TS");
+                remuxer.abort();
+                return null;
+            }
+            return remuxer;
+        } catch (IOException e) {
+            Log.w(TAG, "Native remux failed, keeping TS: " + e.getMessage());
+            remuxer.abort();
+            return null;
+        }
+    }
+
+    /**
+     * Write the MP4 index and drop the transport stream
+     * @return the MP4 file, or null if the TS should be kept instead
+     */
+    private File finishRemuxer(TsRemuxer remuxer, File tsFile) {
+        try {
+            if (!remuxer.isSupported()) {
+                remuxer.abort();
+                return null;
+            }
+            File mp4File = remuxer.finish();
+            remuxer.close();
+            tsFile.delete();
+            Log.d(TAG, "? Remuxed to MP4: " + (mp4File.length() / 1024 / 1024) + " MB");
+            return mp4File;
+        } catch (IOException e) {
+            Log.w(TAG, "Native remux failed, keeping TS: " + e.getMessage());
+            remuxer.abort();
+            return null;
         }
-        
-        Log.d(TAG, "? Merged " + segments.size() + " segments: " + (output.length() / 1024 / 1024) + " MB");
-        return output;
     }
 
     /**
      * Convert TS to MKV
      */
     private File convertToMKV(File tsFile, String mkvPath) {
-        if (!ffmpegAvailable) {
+        if (!isFFmpegAvailable()) {
             File mkvFile = new File(mkvPath);
             if (tsFile.renameTo(mkvFile)) {
                 Log.d(TAG, "? Renamed to MKV");
@@ -279,7 +597,7 @@ public class HLSDownloader {
 
         try {
             ProcessBuilder pb = new ProcessBuilder(
-                ffmpegPath, "-i", tsFile.getAbsolutePath(),
+                FFMPEG_PATH, "-i", tsFile.getAbsolutePath(),
                 "-c", "copy", "-movflags", "+faststart", "-y", mkvPath
             );
             
@@ -305,7 +623,7 @@ public class HLSDownloader {
     /**
      * Estimate quality from bitrate (matches Electron implementation)
      */
-    private String estimateQualityFromBitrate(double mbps) {
+    private static String estimateQualityFromBitrate(double mbps) {
         if (mbps >= 8) return "1080p";
         if (mbps >= 4) return "720p";
         if (mbps >= 2) return "480p";
@@ -314,31 +632,54 @@ public class HLSDownloader {
     }
 
     /**
-     * Calculate bitrate and estimate quality from file size and duration
+     * Quality estimation state for a single download
      */
-    private void calculateQualityEstimate(long fileSizeBytes, double durationSeconds) {
-        if (durationSeconds > 0) {
-            double bitrateBps = (fileSizeBytes * 8.0) / durationSeconds;
-            bitrateMbps = bitrateBps / 1000000.0;
-            estimatedQuality = estimateQualityFromBitrate(bitrateMbps);
-            Log.d(TAG, String.format("Quality estimation: %d bytes, %.1fs = %.2f Mbps = %s", 
-                fileSizeBytes, durationSeconds, bitrateMbps, estimatedQuality));
+    private static class QualityEstimate {
+        String estimatedQuality = "";
+        double bitrateMbps = 0;
+
+        /**
+         * Calculate bitrate and estimate quality from file size and duration
+         */
+        void update(long fileSizeBytes, double durationSeconds) {
+            if (durationSeconds > 0) {
+                double bitrateBps = (fileSizeBytes * 8.0) / durationSeconds;
+                bitrateMbps = bitrateBps / 1000000.0;
+                estimatedQuality = estimateQualityFromBitrate(bitrateMbps);
+                Log.d(TAG, String.format("Quality estimation: %d bytes, %.1fs = %.2f Mbps = %s", 
+                    fileSizeBytes, durationSeconds, bitrateMbps, estimatedQuality));
+            }
         }
     }
 
     /**
      * Download HLS stream with WakeLock active and quality estimation
+     * If a segment journal from an interrupted run exists for the same file name and
+     * playlist, only the segments after its committed prefix are fetched
+     */
+    public String downloadStream(
+            String m3u8Url,
+            String quality,
+            String fileName,
+            DownloadProgressCallback progressCallback) throws IOException {
+        return downloadStream(m3u8Url, quality, fileName, concurrency, progressCallback);
+    }
+
+    /**
+     * Download HLS stream with its own segment concurrency, leaving the shared default untouched
+     * @param segmentConcurrency parallel segment requests for this download, 0 for the default
      */
     public String downloadStream(
             String m3u8Url,
             String quality,
             String fileName,
+            int segmentConcurrency,
             DownloadProgressCallback progressCallback) throws IOException {
         
-        // Reset quality estimation
-        totalDuration = 0;
-        estimatedQuality = "";
-        bitrateMbps = 0;
+        final int concurrency = segmentConcurrency > 0 ? segmentConcurrency : this.concurrency;
+        QualityEstimate estimate = new QualityEstimate();
+        final DownloadMetrics metrics = progressCallback.getMetrics();
+        PowerManager.WakeLock wakeLock = acquireWakeLock();
         
         // Use the public Downloads directory so files are visible in file managers
         File downloadsDir;
@@ -360,147 +701,309 @@ public class HLSDownloader {
         String baseName = fileName.replaceAll("[^a-zA-Z0-9]", "_");
         File tsFile = new File(downloadsDir, baseName + ".ts");
         File mkvFile = new File(downloadsDir, baseName + ".mkv");
+        File mp4File = new File(downloadsDir, baseName + ".mp4");
+        File partsDir = new File(downloadsDir, "." + baseName + ".parts");
+        File stageDir = new File(downloadsDir, "." + baseName + ".stage");
+        File journalFile = new File(downloadsDir, "." + baseName + ".journal");
+        TsRemuxer remuxer = null;
+        LocalHlsServer.Session playback = null;
         
-        Log.d(TAG, "Download path: " + mkvFile.getAbsolutePath());
+        Log.d(TAG, "Download path: " + mp4File.getAbsolutePath());
+        Log.d(TAG, "Fetching with " + concurrency + " parallel segment requests");
         
         try {
             progressCallback.onProgress("Fetching playlist", 5, null, 0);
-            String variantUrl = parsePlaylistAndGetVariant(m3u8Url, quality);
+            HlsPlaylist playlist = fetchMediaPlaylist(m3u8Url, quality, metrics);
+            String variantUrl = playlist.url;
             
             progressCallback.onProgress("Analyzing segments", 10, null, 0);
-            List<SegmentInfo> segmentInfos = parseSegmentPlaylistWithDuration(variantUrl);
+            final List<HlsPlaylist.Segment> segments = playlist.segments;
             
-            if (segmentInfos.isEmpty()) {
+            if (segments.isEmpty()) {
                 throw new IOException("No segments found");
             }
             
-            // Calculate total duration
-            for (SegmentInfo info : segmentInfos) {
-                totalDuration += info.duration;
+            // Refuse encryption we cannot undo before spending any bandwidth on it
+            if (SegmentDecryptor.checkSupported(playlist)) {
+                Log.d(TAG, "Stream is AES-128 encrypted, decrypting segments as they arrive");
             }
-            Log.d(TAG, String.format("Total duration: %.1f seconds (%dm %ds)", 
-                totalDuration, (int)(totalDuration / 60), (int)(totalDuration % 60)));
-            Log.d(TAG, "Found " + segmentInfos.size() + " segments to download");
             
-            List<byte[]> segments = new ArrayList<>();
+            // Without ENDLIST the playlist is still growing: record it by polling for new segments
+            final boolean live = isLive(playlist);
+            double totalDuration = playlist.getTotalDuration();
+            if (live) {
+                Log.d(TAG, String.format("Live playlist (%s), recording from sequence %d with %.0fs target duration",
+                    playlist.playlistType != null ? playlist.playlistType : "no type", playlist.mediaSequence,
+                    playlist.targetDuration));
+            } else {
+                Log.d(TAG, String.format("Total duration: %.1f seconds (%dm %ds)", 
+                    totalDuration, (int)(totalDuration / 60), (int)(totalDuration % 60)));
+                Log.d(TAG, "Found " + segments.size() + " segments to download");
+            }
+            long refreshedAt = System.currentTimeMillis();
+            
+            final HostLimiter limiter = hostLimiter;
+            final RetryPolicy policy = retryPolicy;
+            final SegmentDecryptor decryptor = new SegmentDecryptor(limiter, policy);
+            // Recorded segments are never fetched twice, so they would only evict useful entries
+            final SegmentStore store = live ? null : getSegmentStore();
+            // Each title inserts at most a share of the store, so its opening segments are what get reused
+            final long storeBudget = store != null ? store.getTitleBudget() : 0;
+            long storedBytes = 0;
+            // Snapshots left by a run that died before the store took them in
+            deleteRecursively(stageDir);
+            
+            // Resume from the journal when it matches this playlist and the partial output is intact;
+            // a live window changes on every refresh, so recordings always start fresh
+            SegmentJournal journal = null;
+            int startIndex = 0;
             long totalBytes = 0;
+            if (!live) {
+                journal = SegmentJournal.openOrCreate(journalFile, variantUrl, segments.size());
+                startIndex = journal.getCommittedSegments();
+                if (startIndex > 0 && tsFile.length() < journal.getCommittedBytes()) {
+                    Log.w(TAG, "Partial output shorter than journal, restarting from segment 0");
+                    journal.delete();
+                    journal = SegmentJournal.openOrCreate(journalFile, variantUrl, segments.size());
+                    startIndex = 0;
+                }
+                totalBytes = journal.getCommittedBytes();
+                if (startIndex > 0) {
+                    Log.d(TAG, "Resuming at segment " + startIndex + "/" + segments.size() + 
+                        " (" + (totalBytes / 1024 / 1024) + " MB already on disk)");
+                }
+            }
             
-            for (int i = 0; i < segmentInfos.size(); i++) {
-                try {
-                    int progress = 10 + (i * 70 / segmentInfos.size());
-                    
-                    byte[] segment = downloadSegment(segmentInfos.get(i).url);
-                    segments.add(segment);
-                    totalBytes += segment.length;
-                    
-                    // Calculate quality estimate periodically
-                    if (i > 0 && totalDuration > 0) {
-                        double downloadedDuration = (double)(i + 1) / segmentInfos.size() * totalDuration;
-                        if (downloadedDuration > 0) {
-                            calculateQualityEstimate(totalBytes, downloadedDuration);
-                        }
+            // Remux to MP4 while segments arrive; a resumed download replays the prefix already on disk
+            remuxer = startRemuxer(mp4File, tsFile, totalBytes);
+            
+            double fetchedDuration = 0;
+            for (int i = 0; i < startIndex; i++) {
+                fetchedDuration += segments.get(i).duration;
+            }
+            int fetchedSegments = startIndex;
+            
+            // Progress by bytes against a size extrapolated from EXTINF; a recording has no known end
+            TransferEstimator transfer = live
+                ? new TransferEstimator(0, -1)
+                : new TransferEstimator(totalDuration, TransferEstimator.exactSize(segments));
+            transfer.resumed(totalBytes, fetchedDuration);
+            transfer.sample(metrics.getWireBytes(), System.nanoTime());
+            
+            try (SegmentJournal segmentJournal = journal;
+                 SegmentFileWriter writer = new SegmentFileWriter(tsFile, partsDir, totalBytes);
+                 SegmentFetchPool pool = new SegmentFetchPool(concurrency)) {
+                // Serve what is on disk so playback can start long before the download ends
+                playback = openPlayback(baseName, tsFile);
+                if (playback != null) {
+                    for (int i = 0; i < startIndex; i++) {
+                        HlsPlaylist.Segment segment = segments.get(i);
+                        playback.addSegment(segmentJournal.getEndOffset(i), segment.duration, segment.discontinuity);
                     }
+                    if (startIndex > 0) {
+                        announcePlayback(playback, progressCallback);
+                    }
+                }
+                
+                HlsPlaylist current = playlist;
+                int batchStart = startIndex;
+                // One batch for VOD; for live, one batch per playlist refresh that brought new segments
+                while (current != null) {
+                    final List<HlsPlaylist.Segment> batch = current.segments;
                     
-                    // Send progress with quality info
-                    progressCallback.onProgress("Downloading", progress, estimatedQuality, bitrateMbps);
+                    // Adjacent byte ranges of one resource are fetched with a single request
+                    final List<SegmentGroup> groups = SegmentGroup.plan(batch, batchStart, SegmentGroup.DEFAULT_MAX_GROUP_BYTES);
+                    if (groups.size() < batch.size() - batchStart) {
+                        Log.d(TAG, "Merged " + (batch.size() - batchStart) + " byte-range segments into " + groups.size() + " requests");
+                    }
+                    SegmentFetchPool.OrderedResults<List<File>> results = pool.fetchInOrder(0, groups.size(), index -> {
+                        SegmentGroup group = groups.get(index);
+                        List<File> parts = restoreGroup(group, writer, batch, store, metrics);
+                        if (parts != null) {
+                            return parts;
+                        }
+                        parts = fetchGroupWithRetry(group, writer, batch, limiter, policy, metrics);
+                        long decryptStart = System.nanoTime();
+                        for (int i = 0; i < parts.size(); i++) {
+                            decryptor.decrypt(parts.get(i), batch.get(group.firstIndex + i));
+                        }
+                        metrics.addDecryptTime(System.nanoTime() - decryptStart);
+                        return parts;
+                    });
                     
-                    // Log every 10 segments
-                    if (i % 10 == 0) {
-                        Log.d(TAG, String.format("Downloaded segment %d/%d - Total: %d MB - Est: %s @ %.1f Mbps", 
-                            (i + 1), segmentInfos.size(), (totalBytes / 1024 / 1024), 
-                            estimatedQuality, bitrateMbps));
+                    Iterator<File> groupParts = Collections.emptyIterator();
+                    for (int i = batchStart; i < batch.size(); i++) {
+                        if (progressCallback.isCancelled()) {
+                            // Leaving the try closes the pool, which interrupts fetches still in flight
+                            throw new InterruptedIOException("Download cancelled");
+                        }
+                        if (!groupParts.hasNext()) {
+                            groupParts = results.next().iterator();
+                        }
+                        File part = groupParts.next();
+                        long remuxStart = System.nanoTime();
+                        remuxer = feedRemuxer(remuxer, part);
+                        long mergeStart = System.nanoTime();
+                        metrics.addRemuxTime(mergeStart - remuxStart);
+                        // Snapshot before append deletes the part; the store copies it in on its own thread
+                        if (store != null && storedBytes + part.length() <= storeBudget) {
+                            String storeKey = SegmentStore.key(batch.get(i));
+                            if (!store.contains(storeKey)) {
+                                File staged = stageSegment(part, stageDir, i);
+                                if (staged != null) {
+                                    storedBytes += staged.length();
+                                    store.putAsync(storeKey, staged);
+                                }
+                            }
+                        }
+                        long appended = writer.append(part);
+                        writer.sync();
+                        metrics.addMergeTime(System.nanoTime() - mergeStart);
+                        totalBytes += appended;
+                        if (segmentJournal != null) {
+                            segmentJournal.commit(i, writer.size());
+                        }
+                        if (playback != null) {
+                            playback.addSegment(writer.size(), batch.get(i).duration, batch.get(i).discontinuity);
+                            if (playback.getSegmentCount() == 1) {
+                                announcePlayback(playback, progressCallback);
+                            }
+                        }
+                        fetchedDuration += batch.get(i).duration;
+                        fetchedSegments++;
+                        
+                        transfer.onSegment(appended, batch.get(i).duration);
+
+                        transfer.sample(metrics.getWireBytes(), System.nanoTime());
+                        if (transfer.getBytesPerSecond() > 0) {
+                            measuredThroughputBps = transfer.getBytesPerSecond() * 8;
+                        }
+                        progressCallback.onTransfer(transfer.getBytesDone(), transfer.getEstimatedTotalBytes(),
+                            transfer.getBytesPerSecond(), transfer.getEtaSeconds());
+                        
+                        // Calculate quality estimate periodically
+                        if (fetchedSegments > 1 && fetchedDuration > 0) {
+                            estimate.update(totalBytes, fetchedDuration);
+                        }
+                        
+                        // Send progress with quality info; a recording has no known end
+                        if (live) {
+                            progressCallback.onProgress("Recording", 50, estimate.estimatedQuality, estimate.bitrateMbps);
+                        } else {
+                            int progress = 10 + (int) (transfer.getFraction() * 85);
+                            progressCallback.onProgress("Downloading", progress, estimate.estimatedQuality, estimate.bitrateMbps);
+                        }
+                        
+                        // Log every 10 segments
+                        if (fetchedSegments % 10 == 1) {
+                            Log.d(TAG, String.format("Downloaded segment %d%s - Total: %d MB - Est: %s @ %.1f Mbps", 
+                                fetchedSegments, live ? String.format(" (%.0fs recorded)", fetchedDuration) : "/" + batch.size(),
+                                (totalBytes / 1024 / 1024), estimate.estimatedQuality, estimate.bitrateMbps));
+                        }
                     }
                     
-                    if (i < segmentInfos.size() - 1) {
-                        Thread.sleep(100); // Rate limit protection
+                    // Only the segments after the last one written are parsed on the next refresh
+                    HlsPlaylist previous = current;
+                    current = null;
+                    batchStart = 0;
+                    if (live && !previous.endList) {
+                        long nextSequence = batch.get(batch.size() - 1).sequence + 1;
+                        current = awaitLiveSegments(variantUrl, nextSequence, previous.targetDuration, refreshedAt,
+                            wakeLock, progressCallback, metrics);
+                        refreshedAt = System.currentTimeMillis();
                     }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Download interrupted");
                 }
+                
+                progressCallback.onProgress("Merging segments", 95, estimate.estimatedQuality, estimate.bitrateMbps);
             }
             
             // Final quality calculation
-            calculateQualityEstimate(totalBytes, totalDuration);
-            Log.d(TAG, String.format("Final quality: %s @ %.2f Mbps", estimatedQuality, bitrateMbps));
+            estimate.update(totalBytes, fetchedDuration);
+            Log.d(TAG, String.format("Final quality: %s @ %.2f Mbps", estimate.estimatedQuality, estimate.bitrateMbps));
             
             Log.d(TAG, "All segments downloaded. Total: " + (totalBytes / 1024 / 1024) + " MB");
             
-            progressCallback.onProgress("Merging segments", 85, estimatedQuality, bitrateMbps);
-            mergeSegments(segments, tsFile.getAbsolutePath());
+            Log.d(TAG, "? Wrote " + (tsFile.length() / 1024 / 1024) + " MB to " + tsFile.getName());
+            
+            File finalFile = null;
+            if (remuxer != null) {
+                progressCallback.onProgress("Finalizing", 97, estimate.estimatedQuality, estimate.bitrateMbps);
+                long remuxStart = System.nanoTime();
+                finalFile = finishRemuxer(remuxer, tsFile);
+                metrics.addRemuxTime(System.nanoTime() - remuxStart);
+                remuxer = null;
+            }
+            if (finalFile == null) {
+                progressCallback.onProgress("Converting to MKV", 97, estimate.estimatedQuality, estimate.bitrateMbps);
+                long convertStart = System.nanoTime();
+                finalFile = convertToMKV(tsFile, mkvFile.getAbsolutePath());
+                metrics.addConvertTime(System.nanoTime() - convertStart);
+            }
             
-            progressCallback.onProgress("Converting to MKV", 92, estimatedQuality, bitrateMbps);
-            File finalFile = convertToMKV(tsFile, mkvFile.getAbsolutePath());
+            // Output is complete, the journal is no longer needed
+            journalFile.delete();
             
             // Notify media scanner so file shows up in Gallery/Files app
             notifyMediaScanner(finalFile);
             
-            progressCallback.onProgress("Complete", 100, estimatedQuality, bitrateMbps);
-            progressCallback.onFileReady(finalFile.getAbsolutePath(), estimatedQuality, bitrateMbps);
+            metrics.finish();
+            progressCallback.onProgress("Complete", 100, estimate.estimatedQuality, estimate.bitrateMbps);
+            progressCallback.onFileReady(finalFile.getAbsolutePath(), estimate.estimatedQuality, estimate.bitrateMbps);
             
             Log.d(TAG, String.format("Download complete! File: %s Size: %d MB Quality: %s @ %.2f Mbps", 
                 finalFile.getAbsolutePath(), (finalFile.length() / 1024 / 1024), 
-                estimatedQuality, bitrateMbps));
+                estimate.estimatedQuality, estimate.bitrateMbps));
             
             return finalFile.getAbsolutePath();
             
         } catch (Exception e) {
             Log.e(TAG, "Download error: " + e.getMessage(), e);
+            if (remuxer != null) {
+                remuxer.abort();
+            }
+            if (progressCallback.isCancelled()) {
+                // The download is gone from the list, so nothing would ever resume or remove these
+                tsFile.delete();
+                journalFile.delete();
+                deleteRecursively(partsDir);
+                deleteRecursively(stageDir);
+                Log.d(TAG, "Removed partial output of cancelled download " + baseName);
+            }
+            metrics.finish();
             progressCallback.onError(e.getMessage());
             throw e;
         } finally {
-            releaseWakeLock();
+            releaseWakeLock(wakeLock);
+            if (playback != null) {
+                // A session being watched keeps serving the segments it has until it goes idle
+                playback.finish();
+            }
         }
     }
 
     /**
-     * Parse segment playlist and extract duration for each segment
+     * Start serving the growing transport stream over loopback
+     * @return the session, or null if the local server is unavailable
      */
-    private List<SegmentInfo> parseSegmentPlaylistWithDuration(String playlistUrl) throws IOException {
-        String content = downloadContent(playlistUrl);
-        List<SegmentInfo> segments = new ArrayList<>();
-        
-        String[] lines = content.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].contains("EXTINF")) {
-                // Parse duration from #EXTINF:5.005,
-                double duration = 0;
-                try {
-                    String durationStr = lines[i].replaceAll(".*EXTINF:([0-9.]+).*", "$1");
-                    duration = Double.parseDouble(durationStr);
-                } catch (Exception e) {
-                    duration = 5.0; // Default segment duration
-                }
-                
-                if (i + 1 < lines.length) {
-                    String url = lines[i + 1].trim();
-                    if (!url.isEmpty() && !url.startsWith("#")) {
-                        String fullUrl = url.startsWith("http") ? url : resolveUrl(playlistUrl, url);
-                        segments.add(new SegmentInfo(fullUrl, duration));
-                    }
-                }
-            }
+    private LocalHlsServer.Session openPlayback(String key, File tsFile) {
+        try {
+            return LocalHlsServer.getShared().open(key, tsFile);
+        } catch (IOException e) {
+            Log.w(TAG, "Local playback unavailable: " + e.getMessage());
+            return null;
         }
-        
-        return segments;
     }
 
     /**
-     * Helper class to hold segment URL and duration
+     * Notify the media scanner so the file shows up in Gallery/Files app
      */
-    private static class SegmentInfo {
-        String url;
-        double duration;
-        
-        SegmentInfo(String url, double duration) {
-            this.url = url;
-            this.duration = duration;
+    private static void announcePlayback(LocalHlsServer.Session playback, DownloadProgressCallback progressCallback) {
+        String url = LocalHlsServer.getShared().getPlaylistUrl(playback);
+        if (url != null) {
+            progressCallback.onPlaybackReady(url);
         }
     }
 
-    /**
-     * Notify the media scanner so the file shows up in Gallery/Files app
-     */
     private void notifyMediaScanner(File file) {
         try {
             Intent intent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
@@ -512,51 +1015,91 @@ public class HLSDownloader {
         }
     }
 
-    private String parsePlaylistAndGetVariant(String m3u8Url, String quality) throws IOException {
-        String content = downloadContent(m3u8Url);
-        
-        String[] lines = content.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].contains("EXT-X-STREAM-INF")) {
-                if (i + 1 < lines.length) {
-                    String url = lines[i + 1].trim();
-                    if (!url.isEmpty() && !url.startsWith("#")) {
-                        return url.startsWith("http") ? url : resolveUrl(m3u8Url, url);
-                    }
-                }
-            }
-        }
-        
-        return m3u8Url;
+    /**
+     * A media playlist without ENDLIST that is not declared VOD may still gain segments
+     */
+    private static boolean isLive(HlsPlaylist playlist) {
+        return !playlist.endList && !"VOD".equals(playlist.playlistType);
     }
 
-    private List<String> parseSegmentPlaylist(String playlistUrl) throws IOException {
-        String content = downloadContent(playlistUrl);
-        List<String> segments = new ArrayList<>();
-        
-        String[] lines = content.split("\n");
-        for (int i = 0; i < lines.length; i++) {
-            if (lines[i].contains("EXTINF")) {
-                if (i + 1 < lines.length) {
-                    String url = lines[i + 1].trim();
-                    if (!url.isEmpty() && !url.startsWith("#")) {
-                        segments.add(url.startsWith("http") ? url : resolveUrl(playlistUrl, url));
-                    }
+    /**
+     * Poll a live playlist at the target-duration cadence until it lists segments from {@code nextSequence} on
+     * Only those new entries are parsed into segments
+     * @return the refreshed playlist, or null once the recording is stopped or the playlist stops updating
+     */
+    private HlsPlaylist awaitLiveSegments(String playlistUrl, long nextSequence, double targetDuration, long refreshedAt,
+            PowerManager.WakeLock wakeLock, DownloadProgressCallback progressCallback, DownloadMetrics metrics)
+            throws IOException {
+        long targetMs = (long) (Math.max(1, targetDuration) * 1000);
+        long staleLimitMs = Math.max(LIVE_STALE_MIN_MS, 3 * targetMs);
+        long lastUpdate = refreshedAt;
+        long wakeAt = refreshedAt + targetMs;
+        while (true) {
+            // Sleep in short slices so a stop request is seen promptly
+            long now;
+            while ((now = System.currentTimeMillis()) < wakeAt) {
+                if (progressCallback.isStopRequested()) return null;
+                if (progressCallback.isCancelled()) throw new InterruptedIOException("Recording cancelled");
+                try {
+                    Thread.sleep(Math.min(500, wakeAt - now));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Recording interrupted");
                 }
             }
+            if (progressCallback.isStopRequested()) return null;
+            if (wakeLock != null) {
+                // Recordings can outlast the wake lock timeout
+                wakeLock.acquire(WAKE_LOCK_TIMEOUT_MS);
+            }
+            
+            HlsPlaylist refreshed = null;
+            try {
+                refreshed = fetchPlaylist(playlistUrl, nextSequence, metrics);
+                SegmentDecryptor.checkSupported(refreshed);
+            } catch (IOException e) {
+                if (!retryPolicy.isRetryable(e)) throw e;
+                Log.w(TAG, "Live playlist refresh failed, retrying: " + e.getMessage());
+            }
+            
+            long refreshTime = System.currentTimeMillis();
+            if (refreshed != null && !refreshed.segments.isEmpty()) {
+                long first = refreshed.segments.get(0).sequence;
+                if (first > nextSequence) {
+                    Log.w(TAG, "Fell behind the live window, " + (first - nextSequence) + " segments lost");
+                }
+                return refreshed;
+            }
+            if (refreshed != null && refreshed.endList) {
+                Log.d(TAG, "Live playlist ended");
+                return null;
+            }
+            if (refreshTime - lastUpdate > staleLimitMs) {
+                Log.w(TAG, "Live playlist stopped updating, ending recording");
+                return null;
+            }
+            // Unchanged playlist: reload after half the target duration (RFC 8216 section 6.3.4)
+            wakeAt = refreshTime + targetMs / 2;
         }
-        
-        return segments;
     }
 
-    private String resolveUrl(String baseUrl, String relativeUrl) {
-        try {
-            URL base = new URL(baseUrl);
-            URL resolved = new URL(base, relativeUrl);
-            return resolved.toString();
-        } catch (Exception e) {
-            return relativeUrl;
+    /**
+     * Fetch the playlist and, for a master playlist, the rendition matching the requested quality
+     * Returns the playlist itself when it is already a media playlist
+     */
+    private HlsPlaylist fetchMediaPlaylist(String m3u8Url, String quality, DownloadMetrics metrics) throws IOException {
+        HlsPlaylist playlist = fetchPlaylist(m3u8Url, metrics);
+        if (!playlist.isMaster()) {
+            return playlist;
         }
+        
+        List<HlsVariant> variants = playlist.variants;
+        VariantSelector selector = VariantSelector.fromQuality(quality);
+        HlsVariant chosen = selector.select(variants, measuredThroughputBps);
+        Log.d(TAG, String.format("Selected %s (%d bps) of %d variants for quality '%s' using %s, throughput %.1f Mbps",
+            chosen.getLabel(), chosen.bandwidth, variants.size(), quality, selector.getPolicy(),
+            measuredThroughputBps / 1000000.0));
+        return fetchPlaylist(chosen.url, metrics);
     }
 
     /**
@@ -566,5 +1109,41 @@ public class HLSDownloader {
         void onProgress(String status, int progress, String estimatedQuality, double bitrateMbps);
         void onFileReady(String filePath, String estimatedQuality, double bitrateMbps);
         void onError(String error);
+        
+        /**
+         * Polled while recording a live stream; returning true ends the recording and keeps what was captured
+         */
+        default boolean isStopRequested() {
+            return false;
+        }
+        
+        /**
+         * Polled between segments; returning true abandons the download without finalizing it
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+        
+        /**
+         * Byte-level progress after each segment
+         * @param totalBytes extrapolated final size, or -1 while unknown or for a recording
+         * @param bytesPerSecond smoothed network throughput, 0 until measured
+         * @param etaSeconds time left at that throughput, or -1 when unknown
+         */
+        default void onTransfer(long downloadedBytes, long totalBytes, double bytesPerSecond, long etaSeconds) {
+        }
+        
+        /**
+         * The part already downloaded can be played from this loopback playlist URL
+         */
+        default void onPlaybackReady(String playlistUrl) {
+        }
+        
+        /**
+         * Metrics object the download should record into; called once when the download starts
+         */
+        default DownloadMetrics getMetrics() {
+            return new DownloadMetrics();
+        }
     }
 }
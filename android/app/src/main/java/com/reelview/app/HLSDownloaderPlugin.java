@@ -14,6 +14,7 @@ import com.getcapacitor.annotation.CapacitorPlugin;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -28,33 +29,115 @@ public class HLSDownloaderPlugin extends Plugin {
     private static final String TAG = "HLSDownloaderPlugin";
     private static HLSDownloaderPlugin instance;
     private HLSDownloader hlsDownloader;
+    private DownloadScheduler downloadScheduler;
+    private long lastDownloadId = 0;
     private Map<String, DownloadState> downloads = new ConcurrentHashMap<>();
     private List<String> capturedStreams = Collections.synchronizedList(new ArrayList<>());
-    private Map<String, JSONArray> streamVariantsCache = new ConcurrentHashMap<>();
+    private VariantCache variantCache;
+    private VariantLoader variantLoader;
+    private ProgressAggregator progressAggregator;
+    private DownloadStateStore stateStore;
+    private volatile boolean stateLoaded = false;
+    private final List<Runnable> afterStateLoaded = new ArrayList<>();
     
     private static class DownloadState {
         String id, filename, url, quality, status, filePath, error;
         String estimatedQuality;
         double bitrateMbps;
-        int progress;
-        long downloadedBytes, startTime;
+        int progress, priority, concurrency;
+        long downloadedBytes, totalBytes = -1, etaSeconds = -1, startTime;
+        double bytesPerSecond;
+        volatile boolean stopRequested;
+        volatile boolean cancelled;
+        volatile DownloadMetrics metrics;
+        volatile String playbackUrl;
     }
 
     @Override
     public void load() {
-        hlsDownloader = new HLSDownloader(getContext());
+        downloadScheduler = new DownloadScheduler(DownloadScheduler.DEFAULT_MAX_ACTIVE_JOBS);
+        downloadScheduler.setListener(new DownloadScheduler.Listener() {
+            @Override
+            public void onBusy() {
+                startDownloadService();
+            }
+            
+            @Override
+            public void onIdle() {
+                stopDownloadService();
+            }
+        });
+        variantCache = new VariantCache(new File(getContext().getCacheDir(), "variant_cache.json"));
+        // Lookups miss until the file is read, so capture never waits on disk
+        variantCache.loadAsync();
+        variantLoader = new VariantLoader(this::parseM3U8Variants);
+        progressAggregator = new ProgressAggregator(this::emitProgress);
+        stateStore = new DownloadStateStore(new File(getContext().getFilesDir(), "downloads.log"));
         instance = this;
         
         PendingStreamCapture.processPendingStreams(this);
-        loadDownloadsFromPreferences();
+        
+        // Reading persisted downloads is disk work; keep it off the startup path
+        Thread loader = new Thread(this::loadDownloadsInBackground, "DownloadStateLoader");
+        loader.setDaemon(true);
+        loader.start();
         Log.d(TAG, "HLSDownloaderPlugin loaded");
     }
     
+    private void loadDownloadsInBackground() {
+        loadDownloads();
+        List<Runnable> pending;
+        synchronized (afterStateLoaded) {
+            stateLoaded = true;
+            pending = new ArrayList<>(afterStateLoaded);
+            afterStateLoaded.clear();
+        }
+        Log.d(TAG, "Loaded " + downloads.size() + " persisted downloads");
+        try {
+            notifyListeners("downloads-ready", new JSObject().put("downloads", createDownloadsArray()));
+        } catch (Exception e) {
+            Log.e(TAG, "Error notifying downloads ready: " + e.getMessage());
+        }
+        for (Runnable action : pending) {
+            action.run();
+        }
+    }
+    
+    /**
+     * Run an action that reads or changes downloads once persisted state is loaded
+     * @return true if it was deferred, in which case the caller should return
+     */
+    private boolean deferUntilStateLoaded(Runnable action) {
+        if (stateLoaded) return false;
+        synchronized (afterStateLoaded) {
+            if (stateLoaded) return false;
+            afterStateLoaded.add(action);
+            return true;
+        }
+    }
+    
+    /**
+     * The downloader, created when first needed rather than at plugin load
+     */
+    private synchronized HLSDownloader getDownloader() {
+        if (hlsDownloader == null) {
+            hlsDownloader = new HLSDownloader(getContext());
+        }
+        return hlsDownloader;
+    }
+    
     public static HLSDownloaderPlugin getInstance() {
         return instance;
     }
     
-    public synchronized void storeCapturedStream(String url, String source) {
+    public void storeCapturedStream(String url, String source) {
+        storeCapturedStream(url, source, true);
+    }
+
+    /**
+     * @param precache fetch the variants in the background unless the cache already has them
+     */
+    private synchronized void storeCapturedStream(String url, String source, boolean precache) {
         if (url == null || url.isEmpty() || capturedStreams.contains(url)) return;
 
         capturedStreams.add(0, url);
@@ -63,17 +146,15 @@ public class HLSDownloaderPlugin extends Plugin {
         }
         Log.d(TAG, "[HLS-CAPTURE] Captured stream (" + source + "): " + url.substring(0, Math.min(100, url.length())));
 
-        new Thread(() -> {
-            try {
-                JSONArray variants = parseM3U8Variants(url);
-                if (variants.length() > 0) {
-                    streamVariantsCache.put(url, variants);
+        if (precache && !variantCache.isFresh(variantCache.get(url))) {
+            variantLoader.load(url, (variants, error) -> {
+                if (error != null) {
+                    Log.e(TAG, "Failed to pre-cache variants: " + error.getMessage());
+                } else if (variants.length() > 0) {
                     Log.d(TAG, "Pre-cached " + variants.length() + " variants for URL.");
                 }
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to pre-cache variants: " + e.getMessage());
-            }
-        }).start();
+            });
+        }
 
         notifyListeners("stream-captured", new JSObject().put("url", url));
     }
@@ -81,6 +162,23 @@ public class HLSDownloaderPlugin extends Plugin {
     public void captureStreamFromNative(String url) {
         storeCapturedStream(url, "native");
     }
+
+    /**
+     * Capture a playlist whose body the WebView client already fetched and confirmed as #EXTM3U
+     * Its variants are parsed from those bytes, so no second request is made for the URL.
+     */
+    public void capturePlaylistFromNative(String url, String finalUrl, byte[] content, String etag, String lastModified) {
+        try {
+            HlsPlaylist playlist = M3U8Parser.parse(new ByteArrayInputStream(content), url, finalUrl);
+            JSONArray variants = toVariantArray(playlist);
+            if (variants.length() > 0) {
+                variantCache.put(url, variants, etag, lastModified);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not parse proxied playlist: " + e.getMessage());
+        }
+        storeCapturedStream(url, "native-proxy", false);
+    }
     
     @PluginMethod
     public void getQualityVariants(PluginCall call) {
@@ -90,120 +188,91 @@ public class HLSDownloaderPlugin extends Plugin {
             return;
         }
 
-        if (streamVariantsCache.containsKey(url)) {
-            JSObject result = new JSObject().put("variants", streamVariantsCache.get(url));
-            call.resolve(result);
+        // Answer from the cache right away, even when stale; a stale entry is revalidated in the background
+        VariantCache.Entry cached = variantCache.get(url);
+        if (cached != null) {
+            call.resolve(new JSObject().put("variants", cached.variants));
+            if (!variantCache.isFresh(cached)) {
+                variantLoader.load(url, (variants, error) -> {
+                    if (error != null) {
+                        Log.w(TAG, "Variant revalidation failed: " + error.getMessage());
+                    }
+                });
+            }
             return;
         }
 
-        new Thread(() -> {
+        // Joins the pre-cache fetch started at capture time if it is still running
+        variantLoader.load(url, (variants, error) -> {
             try {
-                JSONArray variants = parseM3U8Variants(url);
-                if (variants.length() == 0) {
-                    variants.put(new JSObject().put("url", url).put("label", "Default Quality"));
+                if (error != null) {
+                    Log.e(TAG, "On-demand variant parse failed: " + error.getMessage());
                 }
-                JSObject result = new JSObject().put("variants", variants);
-                call.resolve(result);
-            } catch (Exception e) {
-                Log.e(TAG, "On-demand variant parse failed: " + e.getMessage());
-                try {
-                    call.resolve(new JSObject().put("variants", new JSONArray()
-                        .put(new JSObject().put("url", url).put("label", "Default Quality"))));
-                } catch(Exception e2) {
-                    call.reject(e.getMessage());
+                // The result is shared with other callers, so never add to it
+                if (variants == null || variants.length() == 0) {
+                    variants = new JSONArray().put(new JSObject().put("url", url).put("label", "Default Quality"));
                 }
+                call.resolve(new JSObject().put("variants", variants));
+            } catch (Exception e) {
+                call.reject(e.getMessage());
             }
-        }).start();
+        });
     }
     
+    /**
+     * Fetch and parse a master playlist's variants, revalidating a cached copy with ETag/Last-Modified
+     * Non-empty results are stored in the variant cache
+     */
     private JSONArray parseM3U8Variants(String m3u8Url) throws Exception {
-        JSONArray variants = new JSONArray();
-        java.net.URL url = new java.net.URL(m3u8Url);
-        java.net.URLConnection conn = url.openConnection();
-        conn.setRequestProperty("User-Agent", "Mozilla/5.0 (Linux; Android 10)");
-        conn.setConnectTimeout(10000);
-        conn.setReadTimeout(10000);
+        HttpTransport.Request request = new HttpTransport.Request(m3u8Url)
+            .timeout(10000)
+            .acceptCompressed(true);
         
-        StringBuilder content = new StringBuilder();
-        try (java.io.BufferedReader reader = new java.io.BufferedReader(
-                new java.io.InputStreamReader(conn.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
+        VariantCache.Entry cached = variantCache.get(m3u8Url);
+        if (cached != null) {
+            if (cached.etag != null) request.header("If-None-Match", cached.etag);
+            if (cached.lastModified != null) request.header("If-Modified-Since", cached.lastModified);
         }
         
-        String playlist = content.toString();
-        String[] lines = playlist.split("\n");
+        HlsPlaylist playlist;
+        String etag;
+        String lastModified;
+        try (HttpTransport.Response response = HttpTransport.getShared().execute(request)) {
+            if (response.getStatusCode() == 304 && cached != null) {
+                variantCache.markValidated(m3u8Url);
+                Log.d(TAG, "Cached variants still valid (304)");
+                return cached.variants;
+            }
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.getStatusCode());
+            }
+            etag = response.header("ETag");
+            lastModified = response.header("Last-Modified");
+            playlist = M3U8Parser.parse(response.body(), m3u8Url, response.getUrl());
+        }
         
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i].trim();
+        JSONArray variants = toVariantArray(playlist);
+        if (variants.length() > 0) {
+            variantCache.put(m3u8Url, variants, etag, lastModified);
+        }
+        return variants;
+    }
+
+    private static JSONArray toVariantArray(HlsPlaylist playlist) {
+        JSONArray variants = new JSONArray();
+        for (HlsVariant parsed : playlist.variants) {
+            JSObject variant = new JSObject();
+            variant.put("url", parsed.url);
+            variant.put("bandwidth", parsed.bandwidth);
             
-            if (line.startsWith("#EXT-X-STREAM-INF:")) {
-                int bandwidth = 0;
-                String resolution = null;
-                
-                if (line.contains("BANDWIDTH=")) {
-                    try {
-                        String bwStr = line.substring(line.indexOf("BANDWIDTH=") + 10);
-                        if (bwStr.contains(",")) {
-                            bwStr = bwStr.substring(0, bwStr.indexOf(","));
-                        }
-                        bandwidth = Integer.parseInt(bwStr.trim());
-                    } catch (Exception ignored) {}
-                }
-                
-                if (line.contains("RESOLUTION=")) {
-                    try {
-                        String resStr = line.substring(line.indexOf("RESOLUTION=") + 11);
-                        if (resStr.contains(",")) {
-                            resStr = resStr.substring(0, resStr.indexOf(","));
-                        }
-                        resolution = resStr.trim();
-                    } catch (Exception ignored) {}
-                }
-                
-                if (i + 1 < lines.length) {
-                    String variantUrl = lines[i + 1].trim();
-                    if (!variantUrl.isEmpty() && !variantUrl.startsWith("#")) {
-                        if (!variantUrl.startsWith("http")) {
-                            try {
-                                java.net.URL base = new java.net.URL(m3u8Url);
-                                java.net.URL resolved = new java.net.URL(base, variantUrl);
-                                variantUrl = resolved.toString();
-                            } catch (Exception ignored) {}
-                        }
-                        
-                        JSObject variant = new JSObject();
-                        variant.put("url", variantUrl);
-                        variant.put("bandwidth", bandwidth);
-                        
-                        String label;
-                        if (resolution != null) {
-                            if (resolution.contains("x")) {
-                                String height = resolution.substring(resolution.indexOf("x") + 1);
-                                label = height + "p";
-                            } else {
-                                label = resolution;
-                            }
-                            variant.put("resolution", label);
-                        } else if (bandwidth > 0) {
-                            if (bandwidth > 5000000) label = "1080p";
-                            else if (bandwidth > 2500000) label = "720p";
-                            else if (bandwidth > 1000000) label = "480p";
-                            else label = "360p";
-                            variant.put("resolution", label);
-                        } else {
-                            label = "Auto";
-                        }
-                        variant.put("label", label);
-                        
-                        variants.put(variant);
-                    }
-                }
+            String label = parsed.getLabel();
+            if (parsed.height > 0 || parsed.bandwidth > 0) {
+                variant.put("resolution", label);
             }
+            variant.put("label", label);
+            
+            variants.put(variant);
         }
-        
         return variants;
     }
 
@@ -226,8 +295,9 @@ public class HLSDownloaderPlugin extends Plugin {
                 stream.put("timestamp", System.currentTimeMillis());
                 
                 // Include cached variants if available
-                if (streamVariantsCache.containsKey(url)) {
-                    stream.put("variants", streamVariantsCache.get(url));
+                VariantCache.Entry cached = variantCache.get(url);
+                if (cached != null) {
+                    stream.put("variants", cached.variants);
                 }
                 
                 streams.put(stream);
@@ -241,38 +311,38 @@ public class HLSDownloaderPlugin extends Plugin {
         }
     }
     
-    private void saveDownloadsToPreferences() {
+    /**
+     * Persist one download; only this record is written, not the whole list
+     * A download removed while its worker was still running is not written back.
+     */
+    private void saveDownload(DownloadState state) {
+        if (downloads.get(state.id) != state) return;
         try {
-            android.content.SharedPreferences prefs = getContext().getSharedPreferences("reelview_downloads", android.content.Context.MODE_PRIVATE);
-            android.content.SharedPreferences.Editor editor = prefs.edit();
-            JSONArray downloadsJson = new JSONArray();
-            for (DownloadState state : downloads.values()) {
-                downloadsJson.put(new JSONObject()
-                    .put("id", state.id)
-                    .put("filename", state.filename)
-                    .put("url", state.url)
-                    .put("quality", state.quality)
-                    .put("status", state.status)
-                    .put("progress", state.progress)
-                    .put("downloadedBytes", state.downloadedBytes)
-                    .put("filePath", state.filePath)
-                    .put("error", state.error)
-                    .put("startTime", state.startTime));
-            }
-            editor.putString("downloads_list", downloadsJson.toString());
-            editor.apply();
+            stateStore.put(state.id, new JSONObject()
+                .put("id", state.id)
+                .put("filename", state.filename)
+                .put("url", state.url)
+                .put("quality", state.quality)
+                .put("status", state.status)
+                .put("progress", state.progress)
+                .put("downloadedBytes", state.downloadedBytes)
+                .put("filePath", state.filePath)
+                .put("error", state.error)
+                .put("startTime", state.startTime));
         } catch (Exception e) {
-            Log.e(TAG, "Error saving downloads", e);
+            Log.e(TAG, "Error saving download", e);
         }
     }
 
-    private void loadDownloadsFromPreferences() {
-        try {
-            android.content.SharedPreferences prefs = getContext().getSharedPreferences("reelview_downloads", android.content.Context.MODE_PRIVATE);
-            String downloadsJson = prefs.getString("downloads_list", "[]");
-            JSONArray array = new JSONArray(downloadsJson);
-            for (int i = 0; i < array.length(); i++) {
-                JSONObject obj = array.getJSONObject(i);
+    private void loadDownloads() {
+        Map<String, JSONObject> records;
+        if (stateStore.exists()) {
+            records = stateStore.load();
+        } else {
+            records = migrateDownloadsFromPreferences();
+        }
+        for (JSONObject obj : records.values()) {
+            try {
                 DownloadState state = new DownloadState();
                 state.id = obj.getString("id");
                 state.filename = obj.getString("filename");
@@ -284,37 +354,73 @@ public class HLSDownloaderPlugin extends Plugin {
                 state.filePath = obj.optString("filePath");
                 state.error = obj.optString("error");
                 state.startTime = obj.getLong("startTime");
+                
+                // A download that was running when the process died is not running any more;
+                // its segment journal lets resumeDownload continue where it stopped
+                if (isActiveStatus(state.status)) {
+                    state.status = "interrupted";
+                }
                 downloads.put(state.id, state);
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading download", e);
+            }
+        }
+    }
+
+    /**
+     * One-time move of the old SharedPreferences blob into the download log
+     */
+    private Map<String, JSONObject> migrateDownloadsFromPreferences() {
+        Map<String, JSONObject> records = stateStore.load();
+        try {
+            android.content.SharedPreferences prefs = getContext().getSharedPreferences("reelview_downloads", android.content.Context.MODE_PRIVATE);
+            String downloadsJson = prefs.getString("downloads_list", null);
+            if (downloadsJson == null) return records;
+            JSONArray array = new JSONArray(downloadsJson);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject obj = array.getJSONObject(i);
+                String id = obj.getString("id");
+                records.put(id, obj);
+                stateStore.put(id, obj);
             }
+            prefs.edit().remove("downloads_list").apply();
+            Log.d(TAG, "Migrated " + array.length() + " downloads from preferences");
         } catch (Exception e) {
-            Log.e(TAG, "Error loading downloads", e);
+            Log.e(TAG, "Error migrating downloads", e);
         }
+        return records;
     }
     
     @PluginMethod
     public void startDownload(PluginCall call) {
+        if (deferUntilStateLoaded(() -> startDownload(call))) return;
+        
         String url = call.getString("url");
         String filename = call.getString("filename");
         String quality = call.getString("quality");
+        Integer concurrency = call.getInt("concurrency");
+        Integer priority = call.getInt("priority");
         
         if (url == null || filename == null) {
             call.reject("URL and filename are required");
             return;
         }
         
-        String downloadId = "dl-" + System.currentTimeMillis();
+        String downloadId = nextDownloadId();
         DownloadState state = new DownloadState();
         state.id = downloadId;
         state.filename = filename;
         state.url = url;
         state.quality = quality;
-        state.status = "fetching";
+        state.priority = priority != null ? priority : 0;
+        state.concurrency = concurrency != null ? concurrency : 0;
+        state.status = "queued";
         state.startTime = System.currentTimeMillis();
         downloads.put(downloadId, state);
         
         Log.d(TAG, "Starting download: " + downloadId + " for " + filename);
         
-        saveDownloadsToPreferences();
+        saveDownload(state);
         notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
         
         JSObject result = new JSObject();
@@ -322,115 +428,307 @@ public class HLSDownloaderPlugin extends Plugin {
         result.put("downloadId", downloadId);
         call.resolve(result);
         
-        // CRITICAL: Start download via Foreground Service to survive screen lock & app backgrounding
-        // This replaces the background thread approach
-        Intent downloadIntent = new Intent(getContext(), DownloadService.class);
-        downloadIntent.setAction("DOWNLOAD");
-        downloadIntent.putExtra("downloadId", downloadId);
-        downloadIntent.putExtra("url", url);
-        downloadIntent.putExtra("quality", quality);
-        downloadIntent.putExtra("filename", filename);
+        dispatchDownload(state);
+    }
+    
+    /**
+     * Restart an interrupted or failed download; segments already on disk are not fetched again
+     */
+    @PluginMethod
+    public void resumeDownload(PluginCall call) {
+        if (deferUntilStateLoaded(() -> resumeDownload(call))) return;
+        
+        String id = call.getString("id");
+        DownloadState state = id != null ? downloads.get(id) : null;
+        if (state == null) {
+            call.reject("Download not found");
+            return;
+        }
+        if (isActiveStatus(state.status)) {
+            call.reject("Download is already running");
+            return;
+        }
+        if ("complete".equals(state.status)) {
+            call.reject("Download is already complete");
+            return;
+        }
+        
+        Log.d(TAG, "Resuming download: " + id + " for " + state.filename);
+        state.status = "queued";
+        state.stopRequested = false;
+        state.error = null;
+        
+        saveDownload(state);
+        notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
+        call.resolve(new JSObject().put("success", true).put("downloadId", id));
+        
+        dispatchDownload(state);
+    }
+    
+    /**
+     * End a live recording; segments captured so far are finalized into a playable file
+     */
+    @PluginMethod
+    public void stopRecording(PluginCall call) {
+        if (deferUntilStateLoaded(() -> stopRecording(call))) return;
+        
+        String id = call.getString("id");
+        DownloadState state = id != null ? downloads.get(id) : null;
+        if (state == null) {
+            call.reject("Download not found");
+            return;
+        }
+        if (!"recording".equals(state.status)) {
+            call.reject("Download is not recording");
+            return;
+        }
+        
+        Log.d(TAG, "Stopping recording: " + id);
+        state.stopRequested = true;
+        call.resolve(new JSObject().put("success", true));
+    }
+    
+    /**
+     * Set how many downloads run at once and the combined bandwidth cap; queued downloads keep their order
+     */
+    @PluginMethod
+    public void setDownloadLimits(PluginCall call) {
+        Integer maxConcurrentDownloads = call.getInt("maxConcurrentDownloads");
+        Double maxBandwidthMbps = call.getDouble("maxBandwidthMbps");
+        Double segmentCacheMB = call.getDouble("segmentCacheMB");
+        
+        if (maxConcurrentDownloads != null) {
+            downloadScheduler.setMaxActiveJobs(maxConcurrentDownloads);
+        }
+        if (maxBandwidthMbps != null) {
+            // 0 or less removes the cap
+            getDownloader().setMaxBandwidth((long) (Math.max(0, maxBandwidthMbps) * 1000000 / 8));
+        }
+        if (segmentCacheMB != null) {
+            // 0 or less empties the segment store and stops using it
+            getDownloader().setSegmentStoreSize((long) (Math.max(0, segmentCacheMB) * 1024 * 1024));
+        }
         
+        JSObject result = new JSObject();
+        result.put("maxConcurrentDownloads", downloadScheduler.getMaxActiveJobs());
+        result.put("maxBandwidthMbps", getDownloader().getMaxBandwidth() * 8 / 1000000.0);
+        result.put("segmentCacheMB", getDownloader().getSegmentStoreSize() / (1024.0 * 1024.0));
+        long segmentCacheUsed = getDownloader().getSegmentStoreUsage();
+        // Left out while the store's index is still being read rather than waiting on disk
+        if (segmentCacheUsed >= 0) {
+            result.put("segmentCacheUsedMB", segmentCacheUsed / (1024.0 * 1024.0));
+        }
+        result.put("active", downloadScheduler.getActiveCount());
+        result.put("queued", downloadScheduler.getQueuedCount());
+        double bytesPerSecond = 0;
+        for (DownloadState state : downloads.values()) {
+            if (isActiveStatus(state.status)) {
+                bytesPerSecond += state.bytesPerSecond;
+            }
+        }
+        result.put("measuredThroughputMbps", bytesPerSecond * 8 / 1000000.0);
+        call.resolve(result);
+    }
+    
+    /**
+     * Unique download id; several downloads queued in the same millisecond must not collide
+     */
+    private synchronized String nextDownloadId() {
+        lastDownloadId = Math.max(System.currentTimeMillis(), lastDownloadId + 1);
+        return "dl-" + lastDownloadId;
+    }
+    
+    /**
+     * Keep the process in the foreground while the scheduler runs downloads
+     * The service only holds the foreground notification; the downloads themselves stay on the
+     * scheduler's threads so its concurrency and bandwidth limits apply.
+     */
+    private void startDownloadService() {
+        Intent intent = new Intent(getContext(), DownloadService.class);
+        intent.setAction(DownloadService.ACTION_KEEP_ALIVE);
         try {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
                 // Android 8+ requires startForegroundService for foreground services
-                getContext().startForegroundService(downloadIntent);
-                Log.d(TAG, "Download started via foreground service: " + downloadId);
+                getContext().startForegroundService(intent);
             } else {
-                getContext().startService(downloadIntent);
-                Log.d(TAG, "Download started via service: " + downloadId);
+                getContext().startService(intent);
             }
+            Log.d(TAG, "Download service started");
         } catch (Exception e) {
+            // Downloads still run under their wake locks, they are just easier for the system to kill
             Log.e(TAG, "Error starting foreground service: " + e.getMessage());
-            // Fallback to thread-based download if service fails
-            startDownloadThread(downloadId, url, quality, filename, state);
+        }
+    }
+    
+    private void stopDownloadService() {
+        try {
+            getContext().stopService(new Intent(getContext(), DownloadService.class));
+            Log.d(TAG, "Download service stopped");
+        } catch (Exception e) {
+            Log.e(TAG, "Error stopping foreground service: " + e.getMessage());
         }
     }
     
     /**
-     * Fallback: Start download in background thread if service unavailable
+     * Hand the download to the scheduler; it starts once an active slot is free
      */
-    private void startDownloadThread(String downloadId, String url, String quality, String filename, DownloadState state) {
-        new Thread(() -> {
-            try {
-                Log.d(TAG, "Download thread started (fallback) for " + downloadId);
+    private void dispatchDownload(DownloadState state) {
+        downloadScheduler.submit(state.id, state.priority, () -> runDownload(state));
+    }
+    
+    /**
+     * Run a download on the scheduler's thread
+     */
+    private void runDownload(DownloadState state) {
+        String downloadId = state.id;
+        String url = state.url;
+        String quality = state.quality;
+        String filename = state.filename;
+        try {
+            Log.d(TAG, "Download started for " + downloadId);
+            
+            getDownloader().downloadStream(url, quality, filename, state.concurrency, new HLSDownloader.DownloadProgressCallback() {
+                @Override
+                public void onProgress(String status, int progress, String estimatedQuality, double bitrateMbps) {
+                    state.status = mapStatus(status);
+                    state.progress = progress;
+                    state.estimatedQuality = estimatedQuality;
+                    state.bitrateMbps = bitrateMbps;
+                    
+                    // Called per segment; the aggregator decides what actually reaches JavaScript
+                    progressAggregator.update(state.id, state.status, progress, state.downloadedBytes,
+                        state.totalBytes, state.bytesPerSecond, state.etaSeconds, estimatedQuality, bitrateMbps);
+                }
                 
-                hlsDownloader.downloadStream(url, quality, filename, new HLSDownloader.DownloadProgressCallback() {
-                    @Override
-                    public void onProgress(String status, int progress, String estimatedQuality, double bitrateMbps) {
-                        state.status = mapStatus(status);
-                        state.progress = progress;
-                        state.estimatedQuality = estimatedQuality;
-                        state.bitrateMbps = bitrateMbps;
-                        
-                        Log.d(TAG, String.format("Progress: %s - %d%% - Quality: %s @ %.1f Mbps", 
-                            status, progress, estimatedQuality, bitrateMbps));
-                        
-                        saveDownloadsToPreferences();
-                        
-                        try {
-                            notifyListeners("download-progress", createProgressObject(state));
-                            notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error notifying progress: " + e.getMessage());
-                        }
+                @Override
+                public void onPlaybackReady(String playlistUrl) {
+                    state.playbackUrl = playlistUrl;
+                    Log.d(TAG, "Download " + state.id + " playable while downloading");
+                    try {
+                        notifyListeners("download-playable", new JSObject().put("id", state.id).put("url", playlistUrl));
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error notifying playable: " + e.getMessage());
                     }
+                }
+                
+                @Override
+                public void onTransfer(long downloadedBytes, long totalBytes, double bytesPerSecond, long etaSeconds) {
+                    state.downloadedBytes = downloadedBytes;
+                    state.totalBytes = totalBytes;
+                    state.bytesPerSecond = bytesPerSecond;
+                    state.etaSeconds = etaSeconds;
+                }
+                
+                @Override
+                public void onFileReady(String filePath, String estimatedQuality, double bitrateMbps) {
+                    state.status = "complete";
+                    state.progress = 100;
+                    state.etaSeconds = 0;
+                    state.bytesPerSecond = 0;
+                    state.filePath = filePath;
+                    state.estimatedQuality = estimatedQuality;
+                    state.bitrateMbps = bitrateMbps;
                     
-                    @Override
-                    public void onFileReady(String filePath, String estimatedQuality, double bitrateMbps) {
-                        state.status = "complete";
-                        state.progress = 100;
-                        state.filePath = filePath;
-                        state.estimatedQuality = estimatedQuality;
-                        state.bitrateMbps = bitrateMbps;
-                        
-                        File file = new File(filePath);
-                        if (file.exists()) {
-                            state.downloadedBytes = file.length();
-                        }
-                        
-                        Log.d(TAG, String.format("Download complete: %s - Quality: %s @ %.2f Mbps", 
-                            filePath, estimatedQuality, bitrateMbps));
-                        
-                        saveDownloadsToPreferences();
-                        
-                        try {
-                            notifyListeners("download-complete", createProgressObject(state));
-                            notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error notifying completion: " + e.getMessage());
-                        }
+                    File file = new File(filePath);
+                    if (file.exists()) {
+                        state.downloadedBytes = file.length();
                     }
                     
-                    @Override
-                    public void onError(String error) {
-                        state.status = "error";
-                        state.error = error;
-                        Log.e(TAG, "Download error: " + error);
-                        
-                        saveDownloadsToPreferences();
-                        
-                        try {
-                            notifyListeners("download-error", createProgressObject(state));
-                            notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error notifying failure: " + e.getMessage());
-                        }
+                    Log.d(TAG, String.format("Download complete: %s - Quality: %s @ %.2f Mbps", 
+                        filePath, estimatedQuality, bitrateMbps));
+                    
+                    progressAggregator.remove(state.id);
+                    saveDownload(state);
+                    
+                    try {
+                        notifyListeners("download-complete", createProgressObject(state));
+                        notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error notifying completion: " + e.getMessage());
                     }
-                });
+                }
                 
-            } catch (Exception e) {
-                Log.e(TAG, "Download thread exception for " + downloadId + ": " + e.getMessage(), e);
-                state.status = "error";
-                state.error = e.getMessage();
-                saveDownloadsToPreferences();
-                try {
-                    notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
-                } catch (Exception ex) {
-                    Log.e(TAG, "Error notifying error: " + ex.getMessage());
+                @Override
+                public boolean isStopRequested() {
+                    return state.stopRequested;
                 }
+                
+                @Override
+                public boolean isCancelled() {
+                    return state.cancelled;
+                }
+                
+                @Override
+                public DownloadMetrics getMetrics() {
+                    state.metrics = new DownloadMetrics();
+                    return state.metrics;
+                }
+                
+                @Override
+                public void onError(String error) {
+                    if (state.cancelled) {
+                        Log.d(TAG, "Download " + state.id + " cancelled");
+                        return;
+                    }
+                    state.status = "error";
+                    state.error = error;
+                    Log.e(TAG, "Download error: " + error);
+                    
+                    progressAggregator.remove(state.id);
+                    saveDownload(state);
+                    
+                    try {
+                        notifyListeners("download-error", createProgressObject(state));
+                        notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error notifying failure: " + e.getMessage());
+                    }
+                }
+            });
+            
+        } catch (Exception e) {
+            Log.e(TAG, "Download thread exception for " + downloadId + ": " + e.getMessage(), e);
+            state.status = "error";
+            state.error = e.getMessage();
+            progressAggregator.remove(downloadId);
+            saveDownload(state);
+            try {
+                notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
+            } catch (Exception ex) {
+                Log.e(TAG, "Error notifying error: " + ex.getMessage());
             }
-        }, "DownloadThread-" + downloadId).start();
+        }
+    }
+    
+    /**
+     * Deliver a rate-limited progress delta; only status changes persist and refresh the full list
+     */
+    private void emitProgress(String id, JSObject delta, boolean transition) {
+        DownloadState state = downloads.get(id);
+        if (state == null) return;
+        
+        Log.d(TAG, String.format("Progress: %s - %s - %d%% - Quality: %s @ %.1f Mbps",
+            id, state.status, state.progress, state.estimatedQuality, state.bitrateMbps));
+        
+        try {
+            DownloadMetrics metrics = state.metrics;
+            if (metrics != null) {
+                delta.put("metrics", metrics.toSummaryJson());
+            }
+            notifyListeners("download-progress", delta);
+            if (transition) {
+                saveDownload(state);
+                notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error notifying progress: " + e.getMessage());
+        }
+    }
+    
+    private static boolean isActiveStatus(String status) {
+        return "queued".equals(status) || "fetching".equals(status) || "parsing".equals(status)
+            || "downloading".equals(status) || "recording".equals(status) || "merging".equals(status)
+            || "converting".equals(status);
     }
     
     private String mapStatus(String status) {
@@ -440,7 +738,9 @@ public class HLSDownloaderPlugin extends Plugin {
             case "analyzing":
             case "analyzing segments": return "parsing";
             case "downloading": return "downloading";
+            case "recording": return "recording";
             case "merging segments": return "merging";
+            case "finalizing":
             case "converting to mkv": return "converting";
             case "complete": return "complete";
             default: return status;
@@ -453,10 +753,22 @@ public class HLSDownloaderPlugin extends Plugin {
         obj.put("status", state.status);
         obj.put("progress", state.progress);
         obj.put("downloadedBytes", state.downloadedBytes);
+        obj.put("totalBytes", state.totalBytes);
+        obj.put("bytesPerSecond", (long) state.bytesPerSecond);
+        obj.put("etaSeconds", state.etaSeconds);
         obj.put("estimatedQuality", state.estimatedQuality != null ? state.estimatedQuality : "");
         obj.put("bitrateMbps", state.bitrateMbps);
         if (state.filePath != null) obj.put("filePath", state.filePath);
         if (state.error != null) obj.put("error", state.error);
+        if (state.playbackUrl != null) obj.put("playbackUrl", state.playbackUrl);
+        DownloadMetrics metrics = state.metrics;
+        if (metrics != null) {
+            try {
+                obj.put("metrics", metrics.toJson());
+            } catch (Exception e) {
+                Log.e(TAG, "Error adding metrics: " + e.getMessage());
+            }
+        }
         return obj;
     }
     
@@ -472,6 +784,9 @@ public class HLSDownloaderPlugin extends Plugin {
                 obj.put("status", state.status);
                 obj.put("progress", state.progress);
                 obj.put("downloadedBytes", state.downloadedBytes);
+                obj.put("totalBytes", state.totalBytes);
+                obj.put("bytesPerSecond", (long) state.bytesPerSecond);
+                obj.put("etaSeconds", state.etaSeconds);
                 obj.put("estimatedQuality", state.estimatedQuality != null ? state.estimatedQuality : "");
                 obj.put("bitrateMbps", state.bitrateMbps);
                 obj.put("filePath", state.filePath != null ? state.filePath : "");
@@ -487,6 +802,8 @@ public class HLSDownloaderPlugin extends Plugin {
     
     @PluginMethod
     public void getDownloadsList(PluginCall call) {
+        if (deferUntilStateLoaded(() -> getDownloadsList(call))) return;
+        
         try {
             call.resolve(new JSObject().put("downloads", createDownloadsArray()));
         } catch (Exception e) {
@@ -495,8 +812,69 @@ public class HLSDownloaderPlugin extends Plugin {
         }
     }
     
+    /**
+     * Loopback playlist URL for watching a download that is still in progress
+     * Resolves with a null url until the first segment is on disk.
+     */
+    @PluginMethod
+    public void getPlaybackUrl(PluginCall call) {
+        if (deferUntilStateLoaded(() -> getPlaybackUrl(call))) return;
+        
+        String id = call.getString("id");
+        DownloadState state = id != null ? downloads.get(id) : null;
+        if (state == null) {
+            call.reject("Download not found");
+            return;
+        }
+        JSObject result = new JSObject();
+        result.put("id", id);
+        result.put("url", state.playbackUrl);
+        result.put("status", state.status);
+        call.resolve(result);
+    }
+    
+    /**
+     * Network and processing metrics of downloads run in this session
+     * With an id, that download's full metrics; without, a map of every download that has any
+     */
+    @PluginMethod
+    public void getDownloadMetrics(PluginCall call) {
+        if (deferUntilStateLoaded(() -> getDownloadMetrics(call))) return;
+        
+        try {
+            String id = call.getString("id");
+            if (id != null) {
+                DownloadState state = downloads.get(id);
+                if (state == null) {
+                    call.reject("Download not found");
+                    return;
+                }
+                JSObject result = new JSObject().put("id", id);
+                if (state.metrics != null) {
+                    result.put("metrics", state.metrics.toJson());
+                }
+                call.resolve(result);
+                return;
+            }
+            
+            JSObject all = new JSObject();
+            for (DownloadState state : downloads.values()) {
+                DownloadMetrics metrics = state.metrics;
+                if (metrics != null) {
+                    all.put(state.id, metrics.toJson());
+                }
+            }
+            call.resolve(new JSObject().put("metrics", all));
+        } catch (Exception e) {
+            Log.e(TAG, "Error getting download metrics: " + e.getMessage());
+            call.reject(e.getMessage());
+        }
+    }
+    
     @PluginMethod
     public void clearCompletedDownloads(PluginCall call) {
+        if (deferUntilStateLoaded(() -> clearCompletedDownloads(call))) return;
+        
         try {
             List<String> toRemove = new ArrayList<>();
             for (Map.Entry<String, DownloadState> entry : downloads.entrySet()) {
@@ -507,8 +885,8 @@ public class HLSDownloaderPlugin extends Plugin {
             }
             for (String id : toRemove) {
                 downloads.remove(id);
+                stateStore.remove(id);
             }
-            saveDownloadsToPreferences();
             notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
@@ -519,12 +897,19 @@ public class HLSDownloaderPlugin extends Plugin {
     
     @PluginMethod
     public void removeDownload(PluginCall call) {
+        if (deferUntilStateLoaded(() -> removeDownload(call))) return;
+        
         try {
             String id = call.getString("id");
             boolean deleteFile = call.getBoolean("deleteFile", false);
             
             if (id != null && downloads.containsKey(id)) {
                 DownloadState state = downloads.get(id);
+                if (state != null && !downloadScheduler.cancelQueued(id)) {
+                    // Already running: the worker stops at the next segment boundary
+                    state.cancelled = true;
+                }
+                progressAggregator.remove(id);
                 
                 if (deleteFile && state != null && state.filePath != null) {
                     try {
@@ -539,7 +924,7 @@ public class HLSDownloaderPlugin extends Plugin {
                 }
                 
                 downloads.remove(id);
-                saveDownloadsToPreferences();
+                stateStore.remove(id);
                 notifyListeners("downloads-updated", new JSObject().put("downloads", createDownloadsArray()));
             }
             call.resolve(new JSObject().put("success", true));
@@ -573,7 +958,7 @@ public class HLSDownloaderPlugin extends Plugin {
     public void clearStreams(PluginCall call) {
         try {
             capturedStreams.clear();
-            streamVariantsCache.clear();
+            variantCache.clear();
             Log.d(TAG, "Cleared captured streams");
             call.resolve(new JSObject().put("success", true));
         } catch (Exception e) {
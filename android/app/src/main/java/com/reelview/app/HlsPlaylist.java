@@ -0,0 +1,88 @@
+package com.reelview.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed HLS playlist: either a master playlist (variants) or a media playlist (segments)
+ * Produced by {@link M3U8Parser}
+ */
+public class HlsPlaylist {
+    /** URL the playlist was requested from */
+    public final String url;
+    public final List<HlsVariant> variants = new ArrayList<>();
+    public final List<Segment> segments = new ArrayList<>();
+    public long mediaSequence = 0;
+    public double targetDuration = 0;
+    /** VOD, EVENT or null when the tag is absent */
+    public String playlistType;
+    public boolean endList = false;
+
+    public HlsPlaylist(String url) {
+        this.url = url;
+    }
+
+    public boolean isMaster() {
+        return !variants.isEmpty();
+    }
+
+    public double getTotalDuration() {
+        double total = 0;
+        for (Segment segment : segments) {
+            total += segment.duration;
+        }
+        return total;
+    }
+
+    /**
+     * EXT-X-KEY in effect for a segment
+     */
+    public static class Key {
+        public final String method;
+        public final String uri;
+        /** Explicit IV, or null when it is derived from the media sequence number */
+        public final byte[] iv;
+        public final String keyFormat;
+
+        public Key(String method, String uri, byte[] iv, String keyFormat) {
+            this.method = method;
+            this.uri = uri;
+            this.iv = iv;
+            this.keyFormat = keyFormat;
+        }
+    }
+
+    /**
+     * One media segment with everything needed to fetch and decode it
+     */
+    public static class Segment {
+        public final String url;
+        public final double duration;
+        /** Media sequence number of this segment */
+        public final long sequence;
+        public final int discontinuitySequence;
+        /** True when an EXT-X-DISCONTINUITY precedes this segment */
+        public final boolean discontinuity;
+        /** Sub-range of the resource, or -1 when the whole resource is the segment */
+        public final long byteRangeOffset;
+        public final long byteRangeLength;
+        /** Encryption key, or null for clear segments */
+        public final Key key;
+
+        public Segment(String url, double duration, long sequence, int discontinuitySequence, boolean discontinuity,
+                       long byteRangeOffset, long byteRangeLength, Key key) {
+            this.url = url;
+            this.duration = duration;
+            this.sequence = sequence;
+            this.discontinuitySequence = discontinuitySequence;
+            this.discontinuity = discontinuity;
+            this.byteRangeOffset = byteRangeOffset;
+            this.byteRangeLength = byteRangeLength;
+            this.key = key;
+        }
+
+        public boolean hasByteRange() {
+            return byteRangeLength >= 0;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.reelview.app;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One rendition from a master playlist's EXT-X-STREAM-INF entries
+ */
+public class HlsVariant {
+    public final String url;
+    public final long bandwidth;
+    public final int width;
+    public final int height;
+    public final String codecs;
+
+    public HlsVariant(String url, long bandwidth, int width, int height, String codecs) {
+        this.url = url;
+        this.bandwidth = bandwidth;
+        this.width = width;
+        this.height = height;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Display label such as "720p"; falls back to a bandwidth estimate when RESOLUTION is missing
+     */
+    public String getLabel() {
+        if (height > 0) return height + "p";
+        if (bandwidth > 5000000) return "1080p";
+        if (bandwidth > 2500000) return "720p";
+        if (bandwidth > 1000000) return "480p";
+        if (bandwidth > 0) return "360p";
+        return "Auto";
+    }
+
+    /**
+     * Height used for matching; estimated from the label when RESOLUTION is missing
+     */
+    public int getEffectiveHeight() {
+        if (height > 0) return height;
+        String label = getLabel();
+        return label.endsWith("p") ? Integer.parseInt(label.substring(0, label.length() - 1)) : 0;
+    }
+
+    /**
+     * Build a variant from an EXT-X-STREAM-INF attribute list and the URI that follows it
+     */
+    public static HlsVariant fromAttributes(String url, Map<String, String> attributes) {
+        long bandwidth = parseLong(attributes.get("BANDWIDTH"));
+        int width = 0;
+        int height = 0;
+        String resolution = attributes.get("RESOLUTION");
+        if (resolution != null) {
+            int x = resolution.indexOf('x');
+            if (x > 0) {
+                width = (int) parseLong(resolution.substring(0, x));
+                height = (int) parseLong(resolution.substring(x + 1));
+            }
+        }
+        return new HlsVariant(url, bandwidth, width, height, attributes.get("CODECS"));
+    }
+
+    /**
+     * Parse an HLS attribute list (KEY=VALUE,KEY="quoted, value")
+     */
+    public static Map<String, String> parseAttributes(String list) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        int i = 0;
+        int n = list.length();
+        while (i < n) {
+            int eq = list.indexOf('=', i);
+            if (eq < 0) break;
+            String key = list.substring(i, eq).trim();
+            int valueStart = eq + 1;
+            String value;
+            if (valueStart < n && list.charAt(valueStart) == '"') {
+                int close = list.indexOf('"', valueStart + 1);
+                if (close < 0) close = n;
+                value = list.substring(valueStart + 1, close);
+                i = list.indexOf(',', close);
+            } else {
+                int comma = list.indexOf(',', valueStart);
+                value = list.substring(valueStart, comma < 0 ? n : comma).trim();
+                i = comma;
+            }
+            attributes.put(key, value);
+            if (i < 0) break;
+            i++;
+        }
+        return attributes;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
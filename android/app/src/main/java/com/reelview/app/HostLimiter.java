@@ -0,0 +1,86 @@
+package com.reelview.app;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per-host politeness limits for segment fetches
+ * Caps concurrent requests to a single host and optionally spaces request starts,
+ * replacing the old fixed sleep between segments
+ */
+public class HostLimiter {
+    private final int maxConcurrentPerHost;
+    private final long minIntervalMs;
+    private final Map<String, HostSlot> hosts = new ConcurrentHashMap<>();
+
+    private static class HostSlot {
+        final Semaphore permits;
+        long nextStartTime = 0;
+
+        HostSlot(int permits) {
+            this.permits = new Semaphore(permits, true);
+        }
+    }
+
+    public HostLimiter(int maxConcurrentPerHost, long minIntervalMs) {
+        this.maxConcurrentPerHost = Math.max(1, maxConcurrentPerHost);
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+    }
+
+    /**
+     * Block until a request to the URL's host may start
+     */
+    public void acquire(String url) throws InterruptedException {
+        HostSlot slot = slotFor(url);
+        slot.permits.acquire();
+
+        if (minIntervalMs > 0) {
+            long waitMs;
+            synchronized (slot) {
+                long now = System.currentTimeMillis();
+                long startAt = Math.max(now, slot.nextStartTime);
+                slot.nextStartTime = startAt + minIntervalMs;
+                waitMs = startAt - now;
+            }
+            if (waitMs > 0) {
+                try {
+                    Thread.sleep(waitMs);
+                } catch (InterruptedException e) {
+                    slot.permits.release();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Release the slot taken by {@link #acquire(String)}
+     */
+    public void release(String url) {
+        slotFor(url).permits.release();
+    }
+
+    private HostSlot slotFor(String url) {
+        String host = hostOf(url);
+        HostSlot slot = hosts.get(host);
+        if (slot == null) {
+            HostSlot created = new HostSlot(maxConcurrentPerHost);
+            slot = hosts.putIfAbsent(host, created);
+            if (slot == null) {
+                slot = created;
+            }
+        }
+        return slot;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host != null ? host.toLowerCase() : "";
+        } catch (Exception e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.reelview.app;
+
+import java.io.IOException;
+
+/**
+ * Non-success HTTP response, keeping the status code so callers can decide whether to retry
+ */
+public class HttpStatusException extends IOException {
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    public HttpStatusException(int statusCode) {
+        this(statusCode, -1);
+    }
+
+    public HttpStatusException(int statusCode, long retryAfterMs) {
+        super("HTTP " + statusCode);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Delay requested by the server's Retry-After header, or -1 if none was sent
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Parse a Retry-After header given in seconds; HTTP-date values are ignored
+     */
+    public static long parseRetryAfter(String header) {
+        if (header == null) return -1;
+        try {
+            return Math.max(0, Long.parseLong(header.trim())) * 1000L;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.reelview.app;
+
+import android.util.Log;
+import android.webkit.CookieManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Shared HTTP transport for playlist and segment fetches
+ * All requests go through the platform HttpURLConnection pool: connections are never
+ * disconnect()ed, response bodies are drained on close so the socket returns to the
+ * per-host keep-alive pool, and a single SSLSocketFactory keeps TLS sessions cached
+ * across requests. Default headers and WebView cookies are applied in one place.
+ */
+public class HttpTransport {
+    private static final String TAG = "HttpTransport";
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
+    private static final int DEFAULT_TIMEOUT = 30000;
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final int DRAIN_LIMIT = 64 * 1024;
+
+    private static HttpTransport shared;
+
+    private final SSLSocketFactory sslSocketFactory;
+
+    static {
+        // Keep-alive pool sizing for HttpURLConnection (per-host idle connections)
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+    }
+
+    public static synchronized HttpTransport getShared() {
+        if (shared == null) {
+            shared = new HttpTransport();
+        }
+        return shared;
+    }
+
+    private HttpTransport() {
+        SSLSocketFactory factory;
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, null, null);
+            factory = sslContext.getSocketFactory();
+        } catch (Exception e) {
+            Log.w(TAG, "Falling back to default SSL socket factory: " + e.getMessage());
+            factory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        }
+        this.sslSocketFactory = factory;
+    }
+
+    /**
+     * A single GET request
+     */
+    public static class Request {
+        final String url;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        int timeoutMs = DEFAULT_TIMEOUT;
+        boolean acceptCompressed = false;
+
+        public Request(String url) {
+            this.url = url;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request timeout(int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+            return this;
+        }
+
+        /**
+         * Ask for gzip; only useful for text such as playlists, never for media or ranged requests
+         */
+        public Request acceptCompressed(boolean acceptCompressed) {
+            this.acceptCompressed = acceptCompressed;
+            return this;
+        }
+    }
+
+    /**
+     * Response whose close() returns the connection to the keep-alive pool
+     */
+    public static class Response implements Closeable {
+        private final HttpURLConnection connection;
+        private final int statusCode;
+        private final String finalUrl;
+        private CountingInputStream raw;
+        private CountingInputStream body;
+
+        Response(HttpURLConnection connection, int statusCode, String finalUrl) {
+            this.connection = connection;
+            this.statusCode = statusCode;
+            this.finalUrl = finalUrl;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public boolean isSuccessful() {
+            return statusCode >= 200 && statusCode < 300;
+        }
+
+        /**
+         * URL after redirects, used to resolve relative playlist entries
+         */
+        public String getUrl() {
+            return finalUrl;
+        }
+
+        public String header(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        /**
+         * All response headers; the status line is under the null key
+         */
+        public Map<String, List<String>> headers() {
+            return connection.getHeaderFields();
+        }
+
+        public String getReasonPhrase() {
+            try {
+                return connection.getResponseMessage();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        public long contentLength() {
+            String value = connection.getHeaderField("Content-Length");
+            if (value == null) return -1;
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Response body, transparently gunzipped when the server compressed it
+         */
+        public InputStream body() throws IOException {
+            if (body == null) {
+                CountingInputStream in = raw();
+                body = isCompressed() ? new CountingInputStream(new GZIPInputStream(in)) : in;
+            }
+            return body;
+        }
+
+        public boolean isCompressed() {
+            return "gzip".equalsIgnoreCase(connection.getHeaderField("Content-Encoding"));
+        }
+
+        /**
+         * Bytes read from the socket so far
+         */
+        public long getWireBytes() {
+            return raw != null ? raw.count : 0;
+        }
+
+        /**
+         * Body bytes handed to the caller so far, after decompression
+         */
+        public long getBodyBytes() {
+            return body != null ? body.count : 0;
+        }
+
+        private CountingInputStream raw() throws IOException {
+            if (raw == null) {
+                InputStream in = isSuccessful() ? connection.getInputStream() : connection.getErrorStream();
+                raw = new CountingInputStream(in != null ? in : new ByteArrayInputStream(new byte[0]));
+            }
+            return raw;
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Drain a small remainder so the socket can be reused; larger leftovers are cheaper to drop
+                InputStream in = body != null ? body : raw();
+                byte[] skip = new byte[8192];
+                int drained = 0;
+                int n;
+                while (drained < DRAIN_LIMIT && (n = in.read(skip)) != -1) {
+                    drained += n;
+                }
+            } catch (IOException ignored) {
+                // Connection will simply not be reused
+            } finally {
+                try {
+                    if (raw != null) raw.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Execute a GET, following redirects with cookies re-applied for each hop
+     */
+    public Response execute(Request request) throws IOException {
+        String currentUrl = request.url;
+        for (int hop = 0; hop <= MAX_REDIRECTS; hop++) {
+            HttpURLConnection connection = open(currentUrl, request);
+            int statusCode = connection.getResponseCode();
+            storeCookies(currentUrl, connection);
+
+            if (isRedirect(statusCode)) {
+                String location = connection.getHeaderField("Location");
+                new Response(connection, statusCode, currentUrl).close();
+                if (location == null) {
+                    throw new HttpStatusException(statusCode);
+                }
+                currentUrl = new URL(new URL(currentUrl), location).toString();
+                Log.d(TAG, "Following redirect");
+                continue;
+            }
+            return new Response(connection, statusCode, currentUrl);
+        }
+        throw new IOException("Too many redirects");
+    }
+
+    private HttpURLConnection open(String urlString, Request request) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+        }
+        connection.setRequestMethod("GET");
+        connection.setConnectTimeout(request.timeoutMs);
+        connection.setReadTimeout(request.timeoutMs);
+        connection.setInstanceFollowRedirects(false);
+
+        connection.setRequestProperty("User-Agent", USER_AGENT);
+        connection.setRequestProperty("Accept", "*/*");
+        connection.setRequestProperty("Accept-Language", "en-US,en;q=0.9");
+        connection.setRequestProperty("Accept-Encoding", request.acceptCompressed ? "gzip" : "identity");
+        connection.setRequestProperty("Connection", "keep-alive");
+
+        String cookies = cookiesFor(urlString);
+        if (cookies != null) {
+            connection.setRequestProperty("Cookie", cookies);
+        }
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        return connection;
+    }
+
+    private static boolean isRedirect(int statusCode) {
+        return statusCode == 301 || statusCode == 302 || statusCode == 303
+            || statusCode == 307 || statusCode == 308;
+    }
+
+    private static String cookiesFor(String url) {
+        try {
+            CookieManager cookieManager = CookieManager.getInstance();
+            return cookieManager != null ? cookieManager.getCookie(url) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Feed Set-Cookie back to the WebView jar so the player page and our fetches share a session
+     */
+    private static void storeCookies(String url, HttpURLConnection connection) {
+        try {
+            List<String> setCookies = connection.getHeaderFields().get("Set-Cookie");
+            if (setCookies == null || setCookies.isEmpty()) return;
+            CookieManager cookieManager = CookieManager.getInstance();
+            if (cookieManager == null) return;
+            for (String cookie : setCookies) {
+                cookieManager.setCookie(url, cookie);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not store cookies: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback HTTP server that lets the player watch a download while it is still running
+ * Each download publishes the segments it has committed to its transport stream output; the
+ * server answers with a synthesized EVENT media playlist that addresses those segments as byte
+ * ranges of the one file, and serves the ranges straight from disk. ENDLIST is added once the
+ * download finishes. URLs carry a random per-process token, since any app can reach loopback.
+ */
+public class LocalHlsServer {
+    private static final String TAG = "LocalHlsServer";
+    private static final String PLAYLIST_NAME = "index.m3u8";
+    private static final String MEDIA_NAME = "media.ts";
+    private static final int SOCKET_TIMEOUT_MS = 15000;
+    private static final int ACCEPT_TIMEOUT_MS = 30000;
+    private static final int ACCEPT_RETRY_MS = 200;
+    private static final int MAX_ACCEPT_FAILURES = 20;
+    private static final long FINISHED_IDLE_MS = 2 * 60 * 1000L;
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    private static LocalHlsServer shared;
+
+    private final String token;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private ServerSocket serverSocket;
+
+    /**
+     * Segments of one download that are safe to serve
+     */
+    public static class Session {
+        private final String key;
+        private final RandomAccessFile handle;
+        private final FileChannel channel;
+        private final List<long[]> ranges = new ArrayList<>();   // {offset, length}
+        private final List<Double> durations = new ArrayList<>();
+        private final List<Boolean> discontinuities = new ArrayList<>();
+        private long available = 0;
+        private int targetDuration = 1;
+        private boolean finished = false;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Session(String key, File file) throws IOException {
+            this.key = key;
+            // Held open so playback survives the download replacing or deleting the file when it finishes
+            this.handle = new RandomAccessFile(file, "r");
+            this.channel = handle.getChannel();
+        }
+
+        /**
+         * Publish the next committed segment, which ends at {@code endOffset} in the output file
+         */
+        public synchronized void addSegment(long endOffset, double duration, boolean discontinuity) {
+            if (endOffset <= available) return;
+            ranges.add(new long[] {available, endOffset - available});
+            durations.add(duration);
+            discontinuities.add(discontinuity);
+            available = endOffset;
+            targetDuration = Math.max(targetDuration, (int) Math.ceil(duration));
+        }
+
+        /**
+         * No more segments will come; the playlist gets its ENDLIST
+         */
+        public synchronized void finish() {
+            finished = true;
+        }
+
+        public synchronized int getSegmentCount() {
+            return ranges.size();
+        }
+
+        synchronized String playlist() {
+            StringBuilder playlist = new StringBuilder(128 + ranges.size() * 64);
+            playlist.append("#EXTM3U\n#EXT-X-VERSION:4\n")
+                .append("#EXT-X-TARGETDURATION:").append(targetDuration).append('\n')
+                .append("#EXT-X-PLAYLIST-TYPE:EVENT\n#EXT-X-MEDIA-SEQUENCE:0\n");
+            for (int i = 0; i < ranges.size(); i++) {
+                if (discontinuities.get(i)) {
+                    playlist.append("#EXT-X-DISCONTINUITY\n");
+                }
+                long[] range = ranges.get(i);
+                playlist.append(String.format(Locale.US, "#EXTINF:%.3f,\n", durations.get(i)))
+                    .append("#EXT-X-BYTERANGE:").append(range[1]).append('@').append(range[0]).append('\n')
+                    .append(MEDIA_NAME).append('\n');
+            }
+            if (finished) {
+                playlist.append("#EXT-X-ENDLIST\n");
+            }
+            return playlist.toString();
+        }
+
+        synchronized long available() {
+            return available;
+        }
+
+        synchronized boolean isFinished() {
+            return finished;
+        }
+
+        synchronized boolean isIdleFinished(long now) {
+            return finished && now - lastAccess > FINISHED_IDLE_MS;
+        }
+
+        void close() {
+            try {
+                handle.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public static synchronized LocalHlsServer getShared() {
+        if (shared == null) {
+            shared = new LocalHlsServer();
+        }
+        return shared;
+    }
+
+    private LocalHlsServer() {
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        this.token = hex.toString();
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "LocalHlsServer-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start serving a download's output file, replacing any earlier session with the same key
+     */
+    public Session open(String key, File file) throws IOException {
+        ensureStarted();
+        Session session = new Session(key, file);
+        Session previous = sessions.put(key, session);
+        if (previous != null) {
+            previous.close();
+        }
+        return session;
+    }
+
+    /**
+     * Playlist URL for the session, for the WebView player
+     * @return null if the server cannot listen
+     */
+    public synchronized String getPlaylistUrl(Session session) {
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot listen for playback: " + e.getMessage());
+            return null;
+        }
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/" + token + "/" + session.key + "/" + PLAYLIST_NAME;
+    }
+
+    private synchronized void ensureStarted() throws IOException {
+        if (serverSocket != null) return;
+        final ServerSocket socket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        socket.setSoTimeout(ACCEPT_TIMEOUT_MS);
+        serverSocket = socket;
+        Thread acceptor = new Thread(() -> acceptLoop(socket), "LocalHlsServer-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Log.d(TAG, "Listening on 127.0.0.1:" + socket.getLocalPort());
+    }
+
+    /**
+     * Accept connections until the socket fails for good
+     * Transient errors, such as running out of file descriptors, are retried after a pause; a
+     * closed socket or a run of failures gives it up so the next open() binds a new one.
+     */
+    private void acceptLoop(ServerSocket socket) {
+        int failures = 0;
+        while (true) {
+            try {
+                final Socket connection = socket.accept();
+                workers.execute(() -> serve(connection));
+                failures = 0;
+            } catch (SocketTimeoutException e) {
+                // Periodic wakeup to drop sessions nobody is watching any more
+            } catch (IOException e) {
+                failures++;
+                Log.e(TAG, "Accept failed (" + failures + "): " + e.getMessage());
+                if (socket.isClosed() || failures >= MAX_ACCEPT_FAILURES) {
+                    discardSocket(socket);
+                    return;
+                }
+                try {
+                    Thread.sleep(ACCEPT_RETRY_MS);
+                } catch (InterruptedException interrupted) {
+                    discardSocket(socket);
+                    return;
+                }
+            }
+            reapIdleSessions();
+        }
+    }
+
+    private synchronized void discardSocket(ServerSocket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+        if (serverSocket == socket) {
+            serverSocket = null;
+        }
+    }
+
+    private void reapIdleSessions() {
+        long now = System.currentTimeMillis();
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (session.isIdleFinished(now)) {
+                iterator.remove();
+                session.close();
+                Log.d(TAG, "Closed idle playback session " + session.key);
+            }
+        }
+    }
+
+    /**
+     * Handle keep-alive requests on one connection until the client closes it or goes quiet
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(SOCKET_TIMEOUT_MS);
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 16 * 1024);
+            while (true) {
+                List<String> request = readHead(in);
+                if (request == null || request.isEmpty()) return;
+                if (!handle(request, out)) return;
+            }
+        } catch (SocketTimeoutException e) {
+            // Idle keep-alive connection
+        } catch (IOException e) {
+            Log.d(TAG, "Connection ended: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return whether the connection may be reused
+     */
+    private boolean handle(List<String> request, OutputStream out) throws IOException {
+        String[] requestLine = request.get(0).split(" ");
+        if (requestLine.length < 2) {
+            respond(out, 400, "Bad Request", null, null, 0, false);
+            return false;
+        }
+        String method = requestLine[0];
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method)) {
+            respond(out, 405, "Method Not Allowed", null, null, 0, false);
+            return false;
+        }
+        boolean keepAlive = !"close".equalsIgnoreCase(header(request, "Connection"));
+
+        // /<token>/<key>/<name>
+        String path = requestLine[1];
+        int query = path.indexOf('?');
+        if (query >= 0) path = path.substring(0, query);
+        String[] parts = path.split("/");
+        Session session = parts.length == 4 && token.equals(parts[1]) ? sessions.get(parts[2]) : null;
+        if (session == null) {
+            respond(out, 404, "Not Found", null, null, 0, keepAlive);
+            return keepAlive;
+        }
+        session.lastAccess = System.currentTimeMillis();
+
+        if (PLAYLIST_NAME.equals(parts[3])) {
+            byte[] body = session.playlist().getBytes(StandardCharsets.UTF_8);
+            respond(out, 200, "OK", "application/vnd.apple.mpegurl", null, body.length, keepAlive);
+            if (!head) out.write(body);
+            out.flush();
+            return keepAlive;
+        }
+        if (!MEDIA_NAME.equals(parts[3])) {
+            respond(out, 404, "Not Found", null, null, 0, keepAlive);
+            return keepAlive;
+        }
+
+        // Only the committed prefix exists as far as the player is concerned
+        long available = session.available();
+        long start = 0;
+        long end = available - 1;
+        String range = header(request, "Range");
+        boolean partial = range != null && range.startsWith("bytes=");
+        if (partial) {
+            try {
+                String spec = range.substring(6).trim();
+                int dash = spec.indexOf('-');
+                if (dash == 0) {
+                    start = Math.max(0, available - Long.parseLong(spec.substring(1).trim()));
+                } else {
+                    start = Long.parseLong(spec.substring(0, dash).trim());
+                    String last = spec.substring(dash + 1).trim();
+                    if (!last.isEmpty()) {
+                        end = Math.min(end, Long.parseLong(last));
+                    }
+                }
+            } catch (RuntimeException e) {
+                partial = false;
+                start = 0;
+            }
+            if (partial && (start >= available || start > end)) {
+                respond(out, 416, "Range Not Satisfiable", null, "bytes */" + available, 0, keepAlive);
+                return keepAlive;
+            }
+        }
+        long length = Math.max(0, end - start + 1);
+        // An unfinished file has no final size yet
+        String contentRange = partial ? "bytes " + start + "-" + end + "/" + (session.isFinished() ? available : "*") : null;
+        respond(out, partial ? 206 : 200, partial ? "Partial Content" : "OK", "video/mp2t", contentRange, length, keepAlive);
+        if (!head) {
+            out.flush();
+            WritableByteChannel target = Channels.newChannel(out);
+            long sent = 0;
+            while (sent < length) {
+                long n = session.channel.transferTo(start + sent, length - sent, target);
+                if (n <= 0) throw new IOException("Short read from output file");
+                sent += n;
+            }
+        }
+        out.flush();
+        return keepAlive;
+    }
+
+    private static void respond(OutputStream out, int status, String reason, String contentType, String contentRange,
+                                long contentLength, boolean keepAlive) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        if (contentType != null) head.append("Content-Type: ").append(contentType).append("\r\n");
+        if (contentRange != null) head.append("Content-Range: ").append(contentRange).append("\r\n");
+        head.append("Content-Length: ").append(contentLength).append("\r\n")
+            .append("Accept-Ranges: bytes\r\n")
+            .append("Cache-Control: no-cache\r\n")
+            .append("Access-Control-Allow-Origin: *\r\n")
+            .append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        out.write(head.toString().getBytes(StandardCharsets.US_ASCII));
+        if (contentLength == 0) out.flush();
+    }
+
+    /**
+     * Request line and headers, or null at end of stream
+     */
+    private static List<String> readHead(InputStream in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        int total = 0;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (++total > MAX_HEADER_BYTES) throw new IOException("Request header too large");
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') line.setLength(length - 1);
+                if (line.length() == 0) return lines;
+                lines.add(line.toString());
+                line.setLength(0);
+            } else {
+                line.append((char) c);
+            }
+        }
+        return lines.isEmpty() ? null : lines;
+    }
+
+    private static String header(List<String> request, String name) {
+        for (int i = 1; i < request.size(); i++) {
+            String line = request.get(i);
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,361 @@
+package com.reelview.app;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Incremental M3U8 parser shared by the downloader and the plugin
+ * Reads the playlist straight from the response stream into one reused line buffer.
+ * Tags are matched and numbers parsed on the raw bytes, so the only per-line allocations
+ * are the segment URIs themselves; attribute lists are only decoded for the rare
+ * EXT-X-KEY and EXT-X-STREAM-INF lines.
+ */
+public class M3U8Parser {
+    private static final byte[] EXTM3U = ascii("#EXTM3U");
+    private static final byte[] EXTINF = ascii("#EXTINF:");
+    private static final byte[] BYTERANGE = ascii("#EXT-X-BYTERANGE:");
+    private static final byte[] KEY = ascii("#EXT-X-KEY:");
+    private static final byte[] DISCONTINUITY_SEQUENCE = ascii("#EXT-X-DISCONTINUITY-SEQUENCE:");
+    private static final byte[] DISCONTINUITY = ascii("#EXT-X-DISCONTINUITY");
+    private static final byte[] MEDIA_SEQUENCE = ascii("#EXT-X-MEDIA-SEQUENCE:");
+    private static final byte[] TARGET_DURATION = ascii("#EXT-X-TARGETDURATION:");
+    private static final byte[] PLAYLIST_TYPE = ascii("#EXT-X-PLAYLIST-TYPE:");
+    private static final byte[] ENDLIST = ascii("#EXT-X-ENDLIST");
+    private static final byte[] STREAM_INF = ascii("#EXT-X-STREAM-INF:");
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    private final HlsPlaylist playlist;
+    private final URL base;
+    private final String baseDirectory;
+
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private final long skipBelowSequence;
+    private int segmentOrdinal = 0;
+    private boolean sawContent = false;
+    private boolean sawHeader = false;
+
+    // Tags that apply to the next URI line
+    private double pendingDuration = -1;
+    private long pendingRangeLength = -1;
+    private long pendingRangeOffset = -1;
+    private boolean pendingDiscontinuity = false;
+    private Map<String, String> pendingStreamInf;
+
+    // Tags that apply to every following segment
+    private HlsPlaylist.Key currentKey;
+    private int discontinuitySequence = 0;
+    private String lastRangeUrl;
+    private long lastRangeEnd = 0;
+
+    private M3U8Parser(String url, String baseUrl, long skipBelowSequence) {
+        this.playlist = new HlsPlaylist(url);
+        this.skipBelowSequence = skipBelowSequence;
+        URL parsed = null;
+        try {
+            parsed = new URL(baseUrl);
+        } catch (Exception ignored) {
+            // Relative entries will be left as they are
+        }
+        this.base = parsed;
+        // Directory of the playlist for plain relative names; empty when the URL has no path
+        String withoutQuery = stripQuery(baseUrl);
+        int authority = withoutQuery.indexOf("://");
+        int lastSlash = withoutQuery.lastIndexOf('/');
+        this.baseDirectory = parsed != null && authority > 0 && lastSlash > authority + 2
+            ? withoutQuery.substring(0, lastSlash + 1) : "";
+    }
+
+    /**
+     * Parse a playlist from a response body
+     * @param url the URL that was requested, recorded on the playlist
+     * @param baseUrl URL after redirects, used to resolve relative entries
+     */
+    public static HlsPlaylist parse(InputStream in, String url, String baseUrl) throws IOException {
+        return parse(in, url, baseUrl, Long.MIN_VALUE);
+    }
+
+    /**
+     * Parse a refreshed live playlist, materializing only segments from {@code skipBelowSequence} on
+     * Entries already seen are counted for their sequence numbers but never turned into objects
+     */
+    public static HlsPlaylist parse(InputStream in, String url, String baseUrl, long skipBelowSequence)
+            throws IOException {
+        M3U8Parser parser = new M3U8Parser(url, baseUrl, skipBelowSequence);
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            parser.feed(buffer, n);
+        }
+        return parser.finish();
+    }
+
+    /**
+     * Parse a playlist already held in memory
+     */
+    public static HlsPlaylist parse(String content, String url) throws IOException {
+        return parse(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), url, url);
+    }
+
+    private void feed(byte[] buffer, int count) throws IOException {
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            if (buffer[i] == '\n') {
+                appendToLine(buffer, start, i - start);
+                endLine();
+                start = i + 1;
+            }
+        }
+        appendToLine(buffer, start, count - start);
+    }
+
+    private void appendToLine(byte[] src, int offset, int count) {
+        if (count <= 0) return;
+        if (lineLength + count > line.length) {
+            byte[] grown = new byte[Math.max(line.length * 2, lineLength + count)];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        System.arraycopy(src, offset, line, lineLength, count);
+        lineLength += count;
+    }
+
+    private HlsPlaylist finish() throws IOException {
+        endLine();
+        if (!sawHeader && segmentOrdinal == 0 && playlist.variants.isEmpty()) {
+            throw new IOException("Invalid m3u8 format");
+        }
+        return playlist;
+    }
+
+    private void endLine() throws IOException {
+        int start = 0;
+        int end = lineLength;
+        lineLength = 0;
+        // Trim whitespace, CR and a leading UTF-8 byte order mark
+        if (!sawContent && end >= 3 && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+            start = 3;
+        }
+        while (start < end && line[start] <= ' ') start++;
+        while (end > start && line[end - 1] <= ' ') end--;
+        if (start == end) return;
+
+        if (!sawContent) {
+            sawContent = true;
+            if (line[start] == '<') {
+                throw new IOException("Server returned HTML instead of m3u8");
+            }
+        }
+
+        if (line[start] == '#') {
+            parseTag(start, end);
+        } else {
+            addUri(start, end);
+        }
+    }
+
+    private void parseTag(int start, int end) {
+        if (matches(EXTINF, start, end)) {
+            pendingDuration = parseDecimal(start + EXTINF.length, end);
+        } else if (matches(BYTERANGE, start, end)) {
+            int at = indexOf('@', start + BYTERANGE.length, end);
+            pendingRangeLength = parseLong(start + BYTERANGE.length, at < 0 ? end : at);
+            pendingRangeOffset = at < 0 ? -1 : parseLong(at + 1, end);
+        } else if (matches(KEY, start, end)) {
+            currentKey = parseKey(attributes(start + KEY.length, end));
+        } else if (matches(DISCONTINUITY_SEQUENCE, start, end)) {
+            discontinuitySequence = (int) parseLong(start + DISCONTINUITY_SEQUENCE.length, end);
+        } else if (matches(DISCONTINUITY, start, end)) {
+            pendingDiscontinuity = true;
+            discontinuitySequence++;
+        } else if (matches(MEDIA_SEQUENCE, start, end)) {
+            playlist.mediaSequence = parseLong(start + MEDIA_SEQUENCE.length, end);
+        } else if (matches(TARGET_DURATION, start, end)) {
+            playlist.targetDuration = parseDecimal(start + TARGET_DURATION.length, end);
+        } else if (matches(PLAYLIST_TYPE, start, end)) {
+            playlist.playlistType = new String(line, start + PLAYLIST_TYPE.length,
+                end - start - PLAYLIST_TYPE.length, StandardCharsets.US_ASCII).trim();
+        } else if (matches(ENDLIST, start, end)) {
+            playlist.endList = true;
+        } else if (matches(STREAM_INF, start, end)) {
+            pendingStreamInf = attributes(start + STREAM_INF.length, end);
+        } else if (matches(EXTM3U, start, end)) {
+            sawHeader = true;
+        }
+    }
+
+    private void addUri(int start, int end) {
+        if (pendingStreamInf != null) {
+            playlist.variants.add(HlsVariant.fromAttributes(uriAt(start, end), pendingStreamInf));
+            pendingStreamInf = null;
+            return;
+        }
+        if (pendingDuration < 0) {
+            // A URI without EXTINF is not a segment
+            return;
+        }
+
+        long sequence = playlist.mediaSequence + segmentOrdinal++;
+        boolean skip = sequence < skipBelowSequence;
+        // Skipped entries allocate nothing, unless later implicit byte-range offsets depend on their URI
+        if (skip && pendingRangeLength < 0) {
+            clearPending();
+            return;
+        }
+        String url = uriAt(start, end);
+
+        long rangeOffset = -1;
+        long rangeLength = -1;
+        if (pendingRangeLength >= 0) {
+            rangeLength = pendingRangeLength;
+            // Without an explicit offset the range continues where the previous one of this resource ended
+            rangeOffset = pendingRangeOffset >= 0 ? pendingRangeOffset
+                : (url.equals(lastRangeUrl) ? lastRangeEnd : 0);
+            lastRangeUrl = url;
+            lastRangeEnd = rangeOffset + rangeLength;
+        }
+
+        if (!skip) {
+            playlist.segments.add(new HlsPlaylist.Segment(url, pendingDuration, sequence, discontinuitySequence,
+                pendingDiscontinuity, rangeOffset, rangeLength, currentKey));
+        }
+        clearPending();
+    }
+
+    private void clearPending() {
+        pendingDuration = -1;
+        pendingRangeLength = -1;
+        pendingRangeOffset = -1;
+        pendingDiscontinuity = false;
+    }
+
+    private HlsPlaylist.Key parseKey(Map<String, String> attributes) {
+        String method = attributes.get("METHOD");
+        if (method == null || "NONE".equals(method)) {
+            return null;
+        }
+        String uri = attributes.get("URI");
+        return new HlsPlaylist.Key(method, uri != null && !uri.isEmpty() ? resolve(uri) : uri,
+            parseIv(attributes.get("IV")), attributes.get("KEYFORMAT"));
+    }
+
+    /**
+     * Decode a "0x..." hexadecimal IV into 16 bytes, right-aligned
+     */
+    private static byte[] parseIv(String value) {
+        if (value == null) return null;
+        String hex = value.startsWith("0x") || value.startsWith("0X") ? value.substring(2) : value;
+        byte[] iv = new byte[16];
+        int pos = 15;
+        for (int i = hex.length(); i > 0 && pos >= 0; i -= 2, pos--) {
+            int from = Math.max(0, i - 2);
+            try {
+                iv[pos] = (byte) Integer.parseInt(hex.substring(from, i), 16);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return iv;
+    }
+
+    private String uriAt(int from, int to) {
+        return resolve(new String(line, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private Map<String, String> attributes(int from, int to) {
+        return HlsVariant.parseAttributes(new String(line, from, to - from, StandardCharsets.UTF_8));
+    }
+
+    private String resolve(String uri) {
+        if (uri.startsWith("http://") || uri.startsWith("https://")) {
+            return uri;
+        }
+        // Plain relative file names are by far the common case and need no URL parsing
+        char first = uri.charAt(0);
+        if (first != '/' && first != '.' && first != '?' && uri.indexOf(':') < 0 && !baseDirectory.isEmpty()) {
+            return baseDirectory + uri;
+        }
+        if (base == null) {
+            return uri;
+        }
+        try {
+            return new URL(base, uri).toString();
+        } catch (Exception e) {
+            return uri;
+        }
+    }
+
+    private boolean matches(byte[] tag, int start, int end) {
+        if (end - start < tag.length) return false;
+        for (int i = 0; i < tag.length; i++) {
+            if (line[start + i] != tag[i]) return false;
+        }
+        return true;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private long parseLong(int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                if (line[i] == ' ' && value == 0) continue;
+                break;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Parse a decimal such as "5.005" up to the first non-numeric byte (e.g. the EXTINF comma)
+     */
+    private double parseDecimal(int from, int to) {
+        long whole = 0;
+        long fraction = 0;
+        long scale = 1;
+        boolean inFraction = false;
+        for (int i = from; i < to; i++) {
+            byte b = line[i];
+            if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else if (b >= '0' && b <= '9') {
+                if (inFraction) {
+                    if (scale < 1000000000L) {
+                        fraction = fraction * 10 + (b - '0');
+                        scale *= 10;
+                    }
+                } else {
+                    whole = whole * 10 + (b - '0');
+                }
+            } else if (b != ' ' || whole != 0 || inFraction) {
+                break;
+            }
+        }
+        return whole + (double) fraction / scale;
+    }
+
+    private static String stripQuery(String url) {
+        int cut = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) cut = query;
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < cut) cut = fragment;
+        return url.substring(0, cut);
+    }
+
+    private static byte[] ascii(String tag) {
+        return tag.getBytes(StandardCharsets.US_ASCII);
+    }
+}
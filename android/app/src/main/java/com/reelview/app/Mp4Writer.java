@@ -0,0 +1,758 @@
+package com.reelview.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming MP4 writer
+ * Samples are appended to a single mdat as they arrive, interleaved in short chunks;
+ * the sample tables are kept compact in memory (run-length timing, one int per sample size)
+ * and the moov index is written after the mdat when the stream ends. The result is a
+ * regular seekable MP4 with sync-sample and chunk-offset tables.
+ */
+public class Mp4Writer implements Closeable {
+    private static final int MOVIE_TIMESCALE = 1000;
+    private static final int MDAT_HEADER_SIZE = 16;
+    private static final int MAX_CHUNK_BYTES = 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long mdatStart;
+    private final List<Track> tracks = new ArrayList<>();
+    private boolean finished = false;
+
+    /**
+     * One audio or video track and its sample tables
+     */
+    public static class Track {
+        final int id;
+        final boolean video;
+        final int timescale;
+
+        // Codec configuration, filled in by the caller before finish()
+        byte[] sps, pps;
+        int width, height;
+        byte[] audioSpecificConfig;
+        int channelCount, sampleRate;
+
+        // Sample tables
+        final IntList sampleSizes = new IntList();
+        final IntList sttsCounts = new IntList();
+        final IntList sttsDeltas = new IntList();
+        final IntList cttsCounts = new IntList();
+        final IntList cttsOffsets = new IntList();
+        final IntList syncSamples = new IntList();
+        final LongList chunkOffsets = new LongList();
+        final IntList stscFirstChunk = new IntList();
+        final IntList stscSamplesPerChunk = new IntList();
+        boolean hasCompositionOffsets = false;
+
+        long firstDts = -1;
+        int firstCtsOffset = 0;
+        long lastDts = -1;
+        int lastDelta = 0;
+        long mediaDuration = 0;
+
+        // Samples waiting to be written as the next chunk
+        final ByteArrayBuilder pending = new ByteArrayBuilder(256 * 1024);
+        int pendingSamples = 0;
+        long pendingStartDts = -1;
+
+        Track(int id, boolean video, int timescale) {
+            this.id = id;
+            this.video = video;
+            this.timescale = timescale;
+        }
+
+        public boolean isVideo() {
+            return video;
+        }
+
+        public int getTimescale() {
+            return timescale;
+        }
+
+        public int getSampleCount() {
+            return sampleSizes.size();
+        }
+
+        public void setVideoConfig(byte[] sps, byte[] pps, int width, int height) {
+            this.sps = sps;
+            this.pps = pps;
+            this.width = width;
+            this.height = height;
+        }
+
+        public void setAudioConfig(byte[] audioSpecificConfig, int channelCount, int sampleRate) {
+            this.audioSpecificConfig = audioSpecificConfig;
+            this.channelCount = channelCount;
+            this.sampleRate = sampleRate;
+        }
+
+        boolean isConfigured() {
+            return video ? (sps != null && pps != null) : audioSpecificConfig != null;
+        }
+
+        void addDelta(int delta) {
+            int n = sttsDeltas.size();
+            if (n > 0 && sttsDeltas.get(n - 1) == delta) {
+                sttsCounts.set(n - 1, sttsCounts.get(n - 1) + 1);
+            } else {
+                sttsCounts.add(1);
+                sttsDeltas.add(delta);
+            }
+            mediaDuration += delta;
+        }
+
+        void addCtsOffset(int offset) {
+            if (offset != 0) hasCompositionOffsets = true;
+            int n = cttsOffsets.size();
+            if (n > 0 && cttsOffsets.get(n - 1) == offset) {
+                cttsCounts.set(n - 1, cttsCounts.get(n - 1) + 1);
+            } else {
+                cttsCounts.add(1);
+                cttsOffsets.add(offset);
+            }
+        }
+
+        void addChunk(long offset, int samples) {
+            chunkOffsets.add(offset);
+            int n = stscSamplesPerChunk.size();
+            if (n == 0 || stscSamplesPerChunk.get(n - 1) != samples) {
+                stscFirstChunk.add(chunkOffsets.size());
+                stscSamplesPerChunk.add(samples);
+            }
+        }
+    }
+
+    public Mp4Writer(File output) throws IOException {
+        this.file = new RandomAccessFile(output, "rw");
+        this.channel = file.getChannel();
+        channel.truncate(0);
+
+        Box ftyp = new Box(32);
+        ftyp.start("ftyp");
+        ftyp.fourcc("isom");
+        ftyp.u32(0x200);
+        ftyp.fourcc("isom");
+        ftyp.fourcc("iso2");
+        ftyp.fourcc("avc1");
+        ftyp.fourcc("mp41");
+        ftyp.end();
+        writeFully(ftyp.toBuffer());
+
+        // mdat with a 64-bit size, patched in finish()
+        mdatStart = channel.position();
+        Box mdatHeader = new Box(MDAT_HEADER_SIZE);
+        mdatHeader.u32(1);
+        mdatHeader.fourcc("mdat");
+        mdatHeader.u64(0);
+        writeFully(mdatHeader.toBuffer());
+    }
+
+    public Track addVideoTrack(int timescale) {
+        Track track = new Track(tracks.size() + 1, true, timescale);
+        tracks.add(track);
+        return track;
+    }
+
+    public Track addAudioTrack(int timescale) {
+        Track track = new Track(tracks.size() + 1, false, timescale);
+        tracks.add(track);
+        return track;
+    }
+
+    /**
+     * Append one sample
+     * @param dts decode time in the track's timescale, monotonically increasing
+     * @param ctsOffset presentation minus decode time (video only, 0 for audio)
+     */
+    public void writeSample(Track track, byte[] data, int offset, int length, long dts, int ctsOffset, boolean sync)
+            throws IOException {
+        if (track.firstDts < 0) {
+            track.firstDts = dts;
+            track.firstCtsOffset = ctsOffset;
+        } else {
+            int delta = (int) Math.max(0, dts - track.lastDts);
+            if (delta == 0) delta = Math.max(1, track.lastDelta);
+            track.addDelta(delta);
+            track.lastDelta = delta;
+        }
+        track.lastDts = dts;
+
+        track.sampleSizes.add(length);
+        if (track.video) {
+            track.addCtsOffset(Math.max(0, ctsOffset));
+            if (sync) {
+                track.syncSamples.add(track.sampleSizes.size());
+            }
+        }
+
+        if (track.pendingSamples == 0) {
+            track.pendingStartDts = dts;
+        }
+        track.pending.append(data, offset, length);
+        track.pendingSamples++;
+
+        // Chunks of about half a second keep audio and video interleaved for playback
+        if (track.pending.size() >= MAX_CHUNK_BYTES || dts - track.pendingStartDts >= track.timescale / 2) {
+            flushChunk(track);
+        }
+    }
+
+    /**
+     * Write the remaining samples and the moov index
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        finished = true;
+
+        List<Track> written = new ArrayList<>();
+        for (Track track : tracks) {
+            flushChunk(track);
+            if (track.getSampleCount() > 0 && track.isConfigured()) {
+                // The last sample has no successor; assume it lasts as long as the one before
+                track.addDelta(track.lastDelta > 0 ? track.lastDelta : track.timescale / 25);
+                written.add(track);
+            }
+        }
+        if (written.isEmpty()) {
+            throw new IOException("No playable tracks");
+        }
+
+        long mdatEnd = channel.position();
+        ByteBuffer size = ByteBuffer.allocate(8);
+        size.putLong(mdatEnd - mdatStart);
+        size.flip();
+        channel.write(size, mdatStart + 8);
+
+        channel.position(mdatEnd);
+        writeFully(buildMoov(written).toBuffer());
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private void flushChunk(Track track) throws IOException {
+        if (track.pendingSamples == 0) return;
+        track.addChunk(channel.position(), track.pendingSamples);
+        writeFully(ByteBuffer.wrap(track.pending.array(), 0, track.pending.size()));
+        track.pending.reset();
+        track.pendingSamples = 0;
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    // ---- moov ----
+
+    // Package-private so tests can index chunk offsets past 4 GB without writing that much
+    Box buildMoov(List<Track> written) {
+        // Presentation start of each track relative to the earliest one, in seconds
+        double earliest = Double.MAX_VALUE;
+        for (Track track : written) {
+            earliest = Math.min(earliest, presentationStart(track));
+        }
+        long movieDuration = 0;
+        for (Track track : written) {
+            long offsetMs = Math.round((presentationStart(track) - earliest) * MOVIE_TIMESCALE);
+            movieDuration = Math.max(movieDuration, offsetMs + toMovieTime(track.mediaDuration, track.timescale));
+        }
+
+        Box b = new Box(64 * 1024);
+        b.start("moov");
+
+        b.start("mvhd");
+        if (needsVersion1(movieDuration)) {
+            b.u32(0x01000000); // version 1, flags
+            b.u64(0); // creation time
+            b.u64(0); // modification time
+            b.u32(MOVIE_TIMESCALE);
+            b.u64(movieDuration);
+        } else {
+            b.u32(0); // version, flags
+            b.u32(0); // creation time
+            b.u32(0); // modification time
+            b.u32(MOVIE_TIMESCALE);
+            b.u32((int) movieDuration);
+        }
+        b.u32(0x00010000); // rate 1.0
+        b.u16(0x0100); // volume 1.0
+        b.zeros(10);
+        writeMatrix(b);
+        b.zeros(24); // pre_defined
+        b.u32(written.size() + 1); // next track id
+        b.end();
+
+        for (Track track : written) {
+            long offsetMs = Math.round((presentationStart(track) - earliest) * MOVIE_TIMESCALE);
+            writeTrak(b, track, offsetMs);
+        }
+
+        b.end();
+        return b;
+    }
+
+    private static double presentationStart(Track track) {
+        return (double) (track.firstDts + track.firstCtsOffset) / track.timescale;
+    }
+
+    private static long toMovieTime(long value, int timescale) {
+        return value * MOVIE_TIMESCALE / timescale;
+    }
+
+    /**
+     * Whether a duration needs the 64-bit (version 1) layout of mvhd, tkhd, elst or mdhd
+     * At the 90 kHz video timescale a 32-bit duration wraps after about 13 hours.
+     */
+    private static boolean needsVersion1(long duration) {
+        return duration > 0xFFFFFFFFL;
+    }
+
+    private void writeTrak(Box b, Track track, long startOffsetMs) {
+        long durationMs = toMovieTime(track.mediaDuration, track.timescale);
+
+        b.start("trak");
+
+        b.start("tkhd");
+        long trackDuration = startOffsetMs + durationMs;
+        if (needsVersion1(trackDuration)) {
+            b.u32(0x01000003); // version 1, flags: enabled | in movie
+            b.u64(0);
+            b.u64(0);
+            b.u32(track.id);
+            b.u32(0);
+            b.u64(trackDuration);
+        } else {
+            b.u32(0x00000003); // version 0, flags: enabled | in movie
+            b.u32(0);
+            b.u32(0);
+            b.u32(track.id);
+            b.u32(0);
+            b.u32((int) trackDuration);
+        }
+        b.zeros(8);
+        b.u16(0); // layer
+        b.u16(track.video ? 0 : 1); // alternate group
+        b.u16(track.video ? 0 : 0x0100); // volume
+        b.u16(0);
+        writeMatrix(b);
+        b.u32(track.video ? track.width << 16 : 0);
+        b.u32(track.video ? track.height << 16 : 0);
+        b.end();
+
+        // Edit list: an empty edit for a late start, then skip the initial composition offset
+        b.start("edts");
+        b.start("elst");
+        boolean wideEdits = needsVersion1(Math.max(startOffsetMs, durationMs));
+        b.u32(wideEdits ? 0x01000000 : 0);
+        b.u32(startOffsetMs > 0 ? 2 : 1);
+        if (startOffsetMs > 0) {
+            if (wideEdits) {
+                b.u64(startOffsetMs);
+                b.u64(-1);
+            } else {
+                b.u32((int) startOffsetMs);
+                b.u32(-1);
+            }
+            b.u32(0x00010000);
+        }
+        if (wideEdits) {
+            b.u64(durationMs);
+            b.u64(track.firstCtsOffset);
+        } else {
+            b.u32((int) durationMs);
+            b.u32(track.firstCtsOffset);
+        }
+        b.u32(0x00010000);
+        b.end();
+        b.end();
+
+        b.start("mdia");
+
+        b.start("mdhd");
+        if (needsVersion1(track.mediaDuration)) {
+            b.u32(0x01000000);
+            b.u64(0);
+            b.u64(0);
+            b.u32(track.timescale);
+            b.u64(track.mediaDuration);
+        } else {
+            b.u32(0);
+            b.u32(0);
+            b.u32(0);
+            b.u32(track.timescale);
+            b.u32((int) track.mediaDuration);
+        }
+        b.u16(0x55C4); // "und"
+        b.u16(0);
+        b.end();
+
+        b.start("hdlr");
+        b.u32(0);
+        b.u32(0);
+        b.fourcc(track.video ? "vide" : "soun");
+        b.zeros(12);
+        b.cstring(track.video ? "VideoHandler" : "SoundHandler");
+        b.end();
+
+        b.start("minf");
+        if (track.video) {
+            b.start("vmhd");
+            b.u32(1);
+            b.zeros(8);
+            b.end();
+        } else {
+            b.start("smhd");
+            b.u32(0);
+            b.u32(0);
+            b.end();
+        }
+        b.start("dinf");
+        b.start("dref");
+        b.u32(0);
+        b.u32(1);
+        b.start("url ");
+        b.u32(1); // self-contained
+        b.end();
+        b.end();
+        b.end();
+
+        writeStbl(b, track);
+
+        b.end(); // minf
+        b.end(); // mdia
+        b.end(); // trak
+    }
+
+    private void writeStbl(Box b, Track track) {
+        b.start("stbl");
+
+        b.start("stsd");
+        b.u32(0);
+        b.u32(1);
+        if (track.video) {
+            writeAvc1(b, track);
+        } else {
+            writeMp4a(b, track);
+        }
+        b.end();
+
+        b.start("stts");
+        b.u32(0);
+        b.u32(track.sttsCounts.size());
+        for (int i = 0; i < track.sttsCounts.size(); i++) {
+            b.u32(track.sttsCounts.get(i));
+            b.u32(track.sttsDeltas.get(i));
+        }
+        b.end();
+
+        if (track.hasCompositionOffsets) {
+            b.start("ctts");
+            b.u32(0);
+            b.u32(track.cttsCounts.size());
+            for (int i = 0; i < track.cttsCounts.size(); i++) {
+                b.u32(track.cttsCounts.get(i));
+                b.u32(track.cttsOffsets.get(i));
+            }
+            b.end();
+        }
+
+        if (track.video) {
+            b.start("stss");
+            b.u32(0);
+            b.u32(track.syncSamples.size());
+            for (int i = 0; i < track.syncSamples.size(); i++) {
+                b.u32(track.syncSamples.get(i));
+            }
+            b.end();
+        }
+
+        b.start("stsc");
+        b.u32(0);
+        b.u32(track.stscFirstChunk.size());
+        for (int i = 0; i < track.stscFirstChunk.size(); i++) {
+            b.u32(track.stscFirstChunk.get(i));
+            b.u32(track.stscSamplesPerChunk.get(i));
+            b.u32(1); // sample description index
+        }
+        b.end();
+
+        b.start("stsz");
+        b.u32(0);
+        b.u32(0); // sizes vary
+        b.u32(track.sampleSizes.size());
+        for (int i = 0; i < track.sampleSizes.size(); i++) {
+            b.u32(track.sampleSizes.get(i));
+        }
+        b.end();
+
+        b.start("co64");
+        b.u32(0);
+        b.u32(track.chunkOffsets.size());
+        for (int i = 0; i < track.chunkOffsets.size(); i++) {
+            b.u64(track.chunkOffsets.get(i));
+        }
+        b.end();
+
+        b.end();
+    }
+
+    private void writeAvc1(Box b, Track track) {
+        b.start("avc1");
+        b.zeros(6);
+        b.u16(1); // data reference index
+        b.zeros(16);
+        b.u16(track.width);
+        b.u16(track.height);
+        b.u32(0x00480000); // 72 dpi
+        b.u32(0x00480000);
+        b.u32(0);
+        b.u16(1); // frame count
+        b.zeros(32); // compressor name
+        b.u16(0x0018); // depth
+        b.u16(0xFFFF); // pre_defined = -1
+
+        b.start("avcC");
+        b.u8(1);
+        b.u8(track.sps[1] & 0xFF); // profile
+        b.u8(track.sps[2] & 0xFF); // compatibility
+        b.u8(track.sps[3] & 0xFF); // level
+        b.u8(0xFF); // 4-byte NAL lengths
+        b.u8(0xE1); // one SPS
+        b.u16(track.sps.length);
+        b.bytes(track.sps);
+        b.u8(1); // one PPS
+        b.u16(track.pps.length);
+        b.bytes(track.pps);
+        b.end();
+
+        b.end();
+    }
+
+    private void writeMp4a(Box b, Track track) {
+        b.start("mp4a");
+        b.zeros(6);
+        b.u16(1); // data reference index
+        b.zeros(8);
+        b.u16(track.channelCount);
+        b.u16(16); // sample size
+        b.u16(0);
+        b.u16(0);
+        b.u32(track.sampleRate << 16);
+
+        byte[] asc = track.audioSpecificConfig;
+        b.start("esds");
+        b.u32(0);
+        b.u8(0x03); // ES_Descriptor
+        b.u8(23 + asc.length);
+        b.u16(0); // ES_ID
+        b.u8(0);
+        b.u8(0x04); // DecoderConfigDescriptor
+        b.u8(15 + asc.length);
+        b.u8(0x40); // MPEG-4 audio
+        b.u8(0x15); // audio stream
+        b.zeros(3); // buffer size
+        b.u32(0); // max bitrate
+        b.u32(0); // avg bitrate
+        b.u8(0x05); // DecoderSpecificInfo
+        b.u8(asc.length);
+        b.bytes(asc);
+        b.u8(0x06); // SLConfigDescriptor
+        b.u8(1);
+        b.u8(0x02);
+        b.end();
+
+        b.end();
+    }
+
+    private static void writeMatrix(Box b) {
+        b.u32(0x00010000);
+        b.u32(0);
+        b.u32(0);
+        b.u32(0);
+        b.u32(0x00010000);
+        b.u32(0);
+        b.u32(0);
+        b.u32(0);
+        b.u32(0x40000000);
+    }
+
+    // ---- helpers ----
+
+    /**
+     * Growable big-endian buffer with nested box size patching
+     */
+    static class Box {
+        private byte[] buf;
+        private int pos = 0;
+        private final IntList starts = new IntList();
+
+        Box(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void start(String type) {
+            starts.add(pos);
+            u32(0);
+            fourcc(type);
+        }
+
+        void end() {
+            int start = starts.removeLast();
+            int size = pos - start;
+            buf[start] = (byte) (size >>> 24);
+            buf[start + 1] = (byte) (size >>> 16);
+            buf[start + 2] = (byte) (size >>> 8);
+            buf[start + 3] = (byte) size;
+        }
+
+        void u8(int v) {
+            ensure(1);
+            buf[pos++] = (byte) v;
+        }
+
+        void u16(int v) {
+            ensure(2);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void u32(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24);
+            buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8);
+            buf[pos++] = (byte) v;
+        }
+
+        void u64(long v) {
+            u32((int) (v >>> 32));
+            u32((int) v);
+        }
+
+        void fourcc(String type) {
+            for (int i = 0; i < 4; i++) {
+                u8(type.charAt(i));
+            }
+        }
+
+        void cstring(String s) {
+            for (int i = 0; i < s.length(); i++) {
+                u8(s.charAt(i));
+            }
+            u8(0);
+        }
+
+        void bytes(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, buf, pos, data.length);
+            pos += data.length;
+        }
+
+        void zeros(int count) {
+            ensure(count);
+            pos += count;
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(buf, 0, pos);
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+    }
+
+    static class ByteArrayBuilder {
+        private byte[] buf;
+        private int size = 0;
+
+        ByteArrayBuilder(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        void append(byte[] data, int offset, int length) {
+            if (size + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + length));
+            }
+            System.arraycopy(data, offset, buf, size, length);
+            size += length;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        void reset() {
+            size = 0;
+        }
+    }
+
+    static class IntList {
+        private int[] values = new int[256];
+        private int size = 0;
+
+        void add(int v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        void set(int i, int v) {
+            values[i] = v;
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    static class LongList {
+        private long[] values = new long[256];
+        private int size = 0;
+
+        void add(long v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.reelview.app;
+
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches candidate playlist requests on the WebView's behalf and confirms them by content
+ * URL patterns such as /playlist or /manifest are loose, so instead of capturing every match and
+ * fetching it a second time to parse it, the interception hook performs the request itself, sniffs
+ * the first bytes for #EXTM3U, hands a confirmed playlist body straight to the plugin, and returns
+ * the same bytes to the WebView. Anything that is not a playlist is streamed through untouched.
+ */
+public class PlaylistCaptureProxy {
+    private static final String TAG = "PlaylistCaptureProxy";
+    private static final int PROBE_BYTES = 64;
+    private static final int MAX_PLAYLIST_BYTES = 8 * 1024 * 1024;
+    private static final int TIMEOUT_MS = 15000;
+    private static final byte[] EXTM3U = {'#', 'E', 'X', 'T', 'M', '3', 'U'};
+    private static final String PLAYLIST_MIME = "application/vnd.apple.mpegurl";
+
+    /**
+     * Receives confirmed playlists
+     */
+    public interface Listener {
+        void onPlaylist(String url, String finalUrl, byte[] content, String etag, String lastModified);
+    }
+
+    private final Listener listener;
+
+    public PlaylistCaptureProxy(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Whether the request can be replayed by us; anything else is left to the WebView
+     */
+    public static boolean canProxy(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || request.isForMainFrame()) return false;
+        Map<String, String> headers = request.getRequestHeaders();
+        if (headers == null) return true;
+        for (String name : headers.keySet()) {
+            if ("Range".equalsIgnoreCase(name)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Perform the request and return its response for the WebView
+     * @return null if the fetch failed, was redirected to a playlist or cannot be handed back,
+     *         in which case the WebView loads the URL itself
+     */
+    public WebResourceResponse intercept(WebResourceRequest request, String url) {
+        HttpTransport.Request outgoing = new HttpTransport.Request(url)
+            .timeout(TIMEOUT_MS)
+            .acceptCompressed(true);
+        Map<String, String> requestHeaders = request.getRequestHeaders();
+        if (requestHeaders != null) {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                if (isForwardedRequestHeader(header.getKey())) {
+                    outgoing.header(header.getKey(), header.getValue());
+                }
+            }
+        }
+
+        HttpTransport.Response response = null;
+        try {
+            response = HttpTransport.getShared().execute(outgoing);
+            InputStream body = response.body();
+            Map<String, String> headers = responseHeaders(response);
+            String contentType = response.header("Content-Type");
+            int status = response.getStatusCode();
+            String reason = response.getReasonPhrase();
+            if (reason == null || reason.isEmpty()) {
+                reason = response.isSuccessful() ? "OK" : "Error";
+            }
+
+            if (!response.isSuccessful()) {
+                if (!isPassThroughStatus(status)) {
+                    // WebResourceResponse rejects 3xx; let the WebView repeat the request itself
+                    response.close();
+                    return null;
+                }
+                return passThrough(response, contentType, status, reason, headers, body);
+            }
+
+            byte[] probe = new byte[PROBE_BYTES];
+            int probed = readFully(body, probe, 0, probe.length);
+            if (!isPlaylist(probe, probed)) {
+                // Not HLS after all: no capture and no extra fetch, just hand the bytes on
+                InputStream rest = new SequenceInputStream(new ByteArrayInputStream(probe, 0, probed), body);
+                return passThrough(response, contentType, status, reason, headers, rest);
+            }
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(1024, probed * 4));
+            content.write(probe, 0, probed);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = body.read(buffer)) != -1) {
+                if (content.size() + n > MAX_PLAYLIST_BYTES) {
+                    throw new IOException("Playlist too large");
+                }
+                content.write(buffer, 0, n);
+            }
+            String finalUrl = response.getUrl();
+            String etag = response.header("ETag");
+            String lastModified = response.header("Last-Modified");
+            response.close();
+            response = null;
+
+            byte[] bytes = content.toByteArray();
+            try {
+                listener.onPlaylist(url, finalUrl, bytes, etag, lastModified);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Playlist listener failed: " + e.getMessage());
+            }
+            if (finalUrl != null && !finalUrl.equals(url)) {
+                // The page would resolve relative variant and segment URIs against the pre-redirect URL
+                Log.d(TAG, "Playlist was redirected, letting the WebView load it: " + finalUrl);
+                return null;
+            }
+            return new WebResourceResponse(mimeType(contentType, PLAYLIST_MIME), charset(contentType),
+                status, reason, headers, new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            Log.w(TAG, "Proxy fetch failed, deferring to WebView: " + e.getMessage());
+            if (response != null) response.close();
+            return null;
+        }
+    }
+
+    private static WebResourceResponse passThrough(final HttpTransport.Response response, String contentType,
+                                                   int status, String reason, Map<String, String> headers,
+                                                   InputStream body) {
+        InputStream stream = new FilterInputStream(body) {
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+        return new WebResourceResponse(mimeType(contentType, "application/octet-stream"), charset(contentType),
+            status, reason, headers, stream);
+    }
+
+    /**
+     * Status codes WebResourceResponse accepts besides 2xx
+     */
+    static boolean isPassThroughStatus(int status) {
+        return (status >= 100 && status <= 299) || (status >= 400 && status <= 599);
+    }
+
+    /**
+     * #EXTM3U at the start, after an optional UTF-8 BOM and leading whitespace
+     */
+    static boolean isPlaylist(byte[] probe, int length) {
+        int i = 0;
+        if (length >= 3 && (probe[0] & 0xFF) == 0xEF && (probe[1] & 0xFF) == 0xBB && (probe[2] & 0xFF) == 0xBF) {
+            i = 3;
+        }
+        while (i < length && (probe[i] == ' ' || probe[i] == '\t' || probe[i] == '\r' || probe[i] == '\n')) {
+            i++;
+        }
+        if (length - i < EXTM3U.length) return false;
+        for (int j = 0; j < EXTM3U.length; j++) {
+            if (probe[i + j] != EXTM3U[j]) return false;
+        }
+        return true;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int n = in.read(buffer, offset + total, length - total);
+            if (n == -1) break;
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Cookies and encodings are handled by the transport; validators are dropped because a 304
+     * cannot be handed back to the WebView
+     */
+    private static boolean isForwardedRequestHeader(String name) {
+        return !("Cookie".equalsIgnoreCase(name)
+            || "Accept-Encoding".equalsIgnoreCase(name)
+            || "Range".equalsIgnoreCase(name)
+            || "If-None-Match".equalsIgnoreCase(name)
+            || "If-Modified-Since".equalsIgnoreCase(name)
+            || "Connection".equalsIgnoreCase(name));
+    }
+
+    /**
+     * Response headers for the WebView, minus those describing the wire encoding we already undid
+     */
+    private static Map<String, String> responseHeaders(HttpTransport.Response response) {
+        Map<String, String> headers = new HashMap<>();
+        Map<String, List<String>> fields = response.headers();
+        if (fields == null) return headers;
+        for (Map.Entry<String, List<String>> field : fields.entrySet()) {
+            String name = field.getKey();
+            List<String> values = field.getValue();
+            if (name == null || values == null || values.isEmpty()) continue;
+            if ("Content-Encoding".equalsIgnoreCase(name)
+                    || "Content-Length".equalsIgnoreCase(name)
+                    || "Transfer-Encoding".equalsIgnoreCase(name)
+                    || "Set-Cookie".equalsIgnoreCase(name)
+                    || "Connection".equalsIgnoreCase(name)) {
+                continue;
+            }
+            headers.put(name, values.get(values.size() - 1));
+        }
+        return headers;
+    }
+
+    private static String mimeType(String contentType, String fallback) {
+        if (contentType == null) return fallback;
+        int semicolon = contentType.indexOf(';');
+        String mime = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim();
+        return mime.isEmpty() ? fallback : mime;
+    }
+
+    private static String charset(String contentType) {
+        if (contentType == null) return null;
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index < 0) return null;
+        String value = contentType.substring(index + 8).trim();
+        int end = value.indexOf(';');
+        if (end >= 0) value = value.substring(0, end);
+        return value.replace("\"", "").trim();
+    }
+}
@@ -0,0 +1,185 @@
+package com.reelview.app;
+
+import com.getcapacitor.JSObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate-limits per-download progress events before they cross the Capacitor bridge
+ * The download loop reports after every segment; this forwards a status change at once, a progress
+ * change only when it moved far enough and the minimum interval has passed, and otherwise keeps the
+ * latest values and sends them on a trailing flush. Each event carries only the id, the status and
+ * the fields that changed since the previous event for that download.
+ */
+public class ProgressAggregator {
+    public static final long DEFAULT_MIN_INTERVAL_MS = 250;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 1000;
+    public static final int DEFAULT_MIN_PROGRESS_DELTA = 1;
+    private static final double BITRATE_EPSILON = 0.05;
+
+    /**
+     * Receives the rate-limited deltas
+     */
+    public interface Sink {
+        /**
+         * @param transition the status changed; listeners may want to refresh or persist everything
+         */
+        void emit(String id, JSObject delta, boolean transition);
+    }
+
+    private static class Snapshot {
+        String status;
+        int progress;
+        long downloadedBytes;
+        long totalBytes;
+        double bytesPerSecond;
+        long etaSeconds;
+        String estimatedQuality;
+        double bitrateMbps;
+    }
+
+    private static class Tracker {
+        Snapshot emitted;
+        final Snapshot latest = new Snapshot();
+        long emittedAt;
+        boolean flushScheduled;
+    }
+
+    private final Sink sink;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final int minProgressDelta;
+    private final Map<String, Tracker> trackers = new HashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ProgressFlush");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ProgressAggregator(Sink sink) {
+        this(sink, DEFAULT_MIN_INTERVAL_MS, DEFAULT_MAX_INTERVAL_MS, DEFAULT_MIN_PROGRESS_DELTA);
+    }
+
+    public ProgressAggregator(Sink sink, long minIntervalMs, long maxIntervalMs, int minProgressDelta) {
+        this.sink = sink;
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = Math.max(minIntervalMs, maxIntervalMs);
+        this.minProgressDelta = Math.max(1, minProgressDelta);
+    }
+
+    /**
+     * Record the latest values for a download; emits now, later, or not at all
+     */
+    public synchronized void update(String id, String status, int progress, long downloadedBytes, long totalBytes,
+                                    double bytesPerSecond, long etaSeconds, String estimatedQuality, double bitrateMbps) {
+        Tracker tracker = trackers.get(id);
+        if (tracker == null) {
+            tracker = new Tracker();
+            trackers.put(id, tracker);
+        }
+        Snapshot latest = tracker.latest;
+        latest.status = status;
+        latest.progress = progress;
+        latest.downloadedBytes = downloadedBytes;
+        latest.totalBytes = totalBytes;
+        latest.bytesPerSecond = bytesPerSecond;
+        latest.etaSeconds = etaSeconds;
+        latest.estimatedQuality = estimatedQuality;
+        latest.bitrateMbps = bitrateMbps;
+
+        Snapshot emitted = tracker.emitted;
+        if (emitted == null || !equal(emitted.status, status)) {
+            emit(id, tracker, true);
+            return;
+        }
+        if (!changed(emitted, latest)) return;
+
+        long elapsed = System.currentTimeMillis() - tracker.emittedAt;
+        boolean moved = Math.abs(progress - emitted.progress) >= minProgressDelta;
+        if (elapsed >= minIntervalMs && (moved || elapsed >= maxIntervalMs)) {
+            emit(id, tracker, false);
+        } else if (!tracker.flushScheduled) {
+            // Trailing edge: whatever is latest at the deadline still gets out
+            tracker.flushScheduled = true;
+            long delay = Math.max(0, (moved ? minIntervalMs : maxIntervalMs) - elapsed);
+            final Tracker scheduled = tracker;
+            flusher.schedule(() -> flushScheduled(id, scheduled), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop tracking a download that finished or was removed; pending changes are dropped
+     */
+    public synchronized void remove(String id) {
+        trackers.remove(id);
+    }
+
+    private synchronized void flushScheduled(String id, Tracker tracker) {
+        tracker.flushScheduled = false;
+        // A removed (or since replaced) tracker must not emit
+        if (trackers.get(id) == tracker && changed(tracker.emitted, tracker.latest)) {
+            emit(id, tracker, false);
+        }
+    }
+
+    private void emit(String id, Tracker tracker, boolean transition) {
+        Snapshot previous = tracker.emitted;
+        Snapshot latest = tracker.latest;
+        JSObject delta = new JSObject();
+        delta.put("id", id);
+        delta.put("status", latest.status);
+        if (previous == null || previous.progress != latest.progress) {
+            delta.put("progress", latest.progress);
+        }
+        if (previous == null || previous.downloadedBytes != latest.downloadedBytes) {
+            delta.put("downloadedBytes", latest.downloadedBytes);
+        }
+        // Size, rate and ETA drift with every segment; they ride along but never trigger an event
+        if (previous == null || previous.totalBytes != latest.totalBytes) {
+            delta.put("totalBytes", latest.totalBytes);
+        }
+        if (previous == null || previous.bytesPerSecond != latest.bytesPerSecond) {
+            delta.put("bytesPerSecond", (long) latest.bytesPerSecond);
+        }
+        if (previous == null || previous.etaSeconds != latest.etaSeconds) {
+            delta.put("etaSeconds", latest.etaSeconds);
+        }
+        if (previous == null || !equal(previous.estimatedQuality, latest.estimatedQuality)) {
+            delta.put("estimatedQuality", latest.estimatedQuality != null ? latest.estimatedQuality : "");
+        }
+        boolean bitrateChanged = previous == null || Math.abs(previous.bitrateMbps - latest.bitrateMbps) >= BITRATE_EPSILON;
+        if (bitrateChanged) {
+            delta.put("bitrateMbps", latest.bitrateMbps);
+        }
+
+        Snapshot copy = new Snapshot();
+        copy.status = latest.status;
+        copy.progress = latest.progress;
+        copy.downloadedBytes = latest.downloadedBytes;
+        copy.totalBytes = latest.totalBytes;
+        copy.bytesPerSecond = latest.bytesPerSecond;
+        copy.etaSeconds = latest.etaSeconds;
+        copy.estimatedQuality = latest.estimatedQuality;
+        // Keep the last sent bitrate so small drifts accumulate into a visible change
+        copy.bitrateMbps = bitrateChanged ? latest.bitrateMbps : previous.bitrateMbps;
+        tracker.emitted = copy;
+        tracker.emittedAt = System.currentTimeMillis();
+        sink.emit(id, delta, transition);
+    }
+
+    private static boolean changed(Snapshot emitted, Snapshot latest) {
+        return emitted.progress != latest.progress
+            || emitted.downloadedBytes != latest.downloadedBytes
+            || !equal(emitted.status, latest.status)
+            || !equal(emitted.estimatedQuality, latest.estimatedQuality)
+            || Math.abs(emitted.bitrateMbps - latest.bitrateMbps) >= BITRATE_EPSILON;
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
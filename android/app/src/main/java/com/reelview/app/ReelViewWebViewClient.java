@@ -11,6 +11,9 @@ public class ReelViewWebViewClient extends BridgeWebViewClient {
 
     private static final String TAG = "ReelViewWebViewClient";
     private Bridge bridge;
+    private volatile UrlClassifier hlsClassifier = UrlClassifier.hlsDefaults();
+    private volatile boolean proxyCapture = true;
+    private final PlaylistCaptureProxy captureProxy = new PlaylistCaptureProxy(this::capturePlaylist);
 
     public ReelViewWebViewClient(Bridge bridge) {
         super(bridge);
@@ -21,11 +24,23 @@ public class ReelViewWebViewClient extends BridgeWebViewClient {
     public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
         String url = request.getUrl().toString();
         
-        Log.d(TAG, "shouldInterceptRequest called for: " + url.substring(0, Math.min(100, url.length())));
+        // Runs for every subresource; only build the trace string when verbose logging is enabled
+        // (adb shell setprop log.tag.ReelViewWebViewClient VERBOSE)
+        if (Log.isLoggable(TAG, Log.VERBOSE)) {
+            Log.v(TAG, "shouldInterceptRequest called for: " + url.substring(0, Math.min(100, url.length())));
+        }
         
         // Capture HLS streams by URL pattern
         if (isHLSStream(url)) {
             Log.d(TAG, "? HLS stream MATCHED (URL pattern): " + url.substring(0, Math.min(100, url.length())));
+            
+            // Fetch it ourselves so only real playlists are captured, and only once
+            if (proxyCapture && PlaylistCaptureProxy.canProxy(request)) {
+                WebResourceResponse response = captureProxy.intercept(request, url);
+                if (response != null) {
+                    return response;
+                }
+            }
             captureStreamUrl(url);
         }
         
@@ -34,19 +49,39 @@ public class ReelViewWebViewClient extends BridgeWebViewClient {
     
     /**
      * Check if URL is an HLS stream
+     * Must have m3u8 extension or be from known HLS paths; see {@link UrlClassifier#hlsDefaults()}
      */
     private boolean isHLSStream(String url) {
-        if (url == null) return false;
-        String lowerUrl = url.toLowerCase();
-        
-        // Must have m3u8 extension or be from known HLS paths
-        return lowerUrl.contains(".m3u8") ||
-               lowerUrl.contains("/hls/") ||
-               lowerUrl.contains("/playlist") ||
-               lowerUrl.contains("/manifest") ||
-               lowerUrl.contains("/pl/") ||           // Common playlist path
-               lowerUrl.contains("/master.") ||       // Master playlist
-               lowerUrl.contains("stream") && lowerUrl.contains("m3u");  // Various stream patterns
+        return hlsClassifier.matches(url);
+    }
+    
+    /**
+     * Replace the rules used to recognize HLS requests
+     */
+    public void setHlsClassifier(UrlClassifier classifier) {
+        this.hlsClassifier = classifier != null ? classifier : UrlClassifier.hlsDefaults();
+    }
+    
+    /**
+     * Enable or disable confirming pattern matches by proxying and sniffing the response
+     * When disabled every pattern match is captured and fetched again by the plugin.
+     */
+    public void setProxyCapture(boolean enabled) {
+        this.proxyCapture = enabled;
+    }
+    
+    /**
+     * Send a proxied playlist confirmed by content to the HLSDownloaderPlugin
+     */
+    private void capturePlaylist(String url, String finalUrl, byte[] content, String etag, String lastModified) {
+        HLSDownloaderPlugin plugin = HLSDownloaderPlugin.getInstance();
+        if (plugin != null) {
+            plugin.capturePlaylistFromNative(url, finalUrl, content, etag, lastModified);
+            Log.d(TAG, "? Playlist confirmed and captured: " + url.substring(0, Math.min(80, url.length())));
+        } else {
+            Log.w(TAG, "? HLSDownloaderPlugin not yet available, queuing stream");
+            PendingStreamCapture.queueStream(url);
+        }
     }
     
     /**
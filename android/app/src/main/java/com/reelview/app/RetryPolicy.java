@@ -0,0 +1,81 @@
+package com.reelview.app;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for segment fetches
+ * Exponential backoff with jitter; timeouts, dropped connections and 408/429/5xx
+ * responses are retried, other HTTP errors fail the segment immediately
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_DELAY_MS = 500;
+    public static final long DEFAULT_MAX_DELAY_MS = 15000;
+
+    private final int maxAttempts;
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+        this.maxDelayMs = Math.max(this.baseDelayMs, maxDelayMs);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a failed attempt is worth repeating
+     */
+    public boolean isRetryable(IOException e) {
+        if (e instanceof HttpStatusException) {
+            return isRetryableStatus(((HttpStatusException) e).getStatusCode());
+        }
+        if (e instanceof SocketTimeoutException) {
+            return true;
+        }
+        // Any other InterruptedIOException means the download itself was interrupted
+        return !(e instanceof InterruptedIOException);
+    }
+
+    public static boolean isRetryableStatus(int statusCode) {
+        switch (statusCode) {
+            case 408: // Request Timeout
+            case 425: // Too Early
+            case 429: // Too Many Requests
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Delay before the given retry (1-based), honouring Retry-After when the server sent one.
+     * Uses "equal jitter": half the exponential delay plus a random share of the other half.
+     */
+    public long backoffDelayMs(int retry, IOException cause) {
+        if (cause instanceof HttpStatusException) {
+            long retryAfter = ((HttpStatusException) cause).getRetryAfterMs();
+            if (retryAfter >= 0) {
+                return Math.min(retryAfter, maxDelayMs);
+            }
+        }
+        int shift = Math.min(Math.max(0, retry - 1), 20);
+        long exp = Math.min(maxDelayMs, baseDelayMs << shift);
+        long half = exp / 2;
+        return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+}
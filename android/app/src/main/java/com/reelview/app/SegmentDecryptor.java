@@ -0,0 +1,193 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Decryption stage for EXT-X-KEY METHOD=AES-128 segments
+ * Keys are fetched once per key URI for the lifetime of a download. Each part file is
+ * decrypted in place as it streams through a per-thread Cipher: plaintext never runs ahead
+ * of ciphertext, so the write position always trails the read position.
+ */
+public class SegmentDecryptor {
+    private static final String TAG = "SegmentDecryptor";
+    public static final String METHOD_AES_128 = "AES-128";
+    private static final int KEY_LENGTH = 16;
+    private static final int BLOCK_SIZE = 16;
+    private static final int TIMEOUT = 15000;
+
+    private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<Cipher>() {
+        @Override
+        protected Cipher initialValue() {
+            try {
+                return Cipher.getInstance("AES/CBC/PKCS5Padding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/CBC unavailable", e);
+            }
+        }
+    };
+
+    private final Map<String, byte[]> keys = new ConcurrentHashMap<>();
+    private final HostLimiter limiter;
+    private final RetryPolicy policy;
+
+    public SegmentDecryptor(HostLimiter limiter, RetryPolicy policy) {
+        this.limiter = limiter;
+        this.policy = policy;
+    }
+
+    /**
+     * Fail before any bandwidth is spent when a playlist uses encryption we cannot undo
+     * @return true if any segment is encrypted
+     */
+    public static boolean checkSupported(HlsPlaylist playlist) throws IOException {
+        boolean encrypted = false;
+        for (HlsPlaylist.Segment segment : playlist.segments) {
+            HlsPlaylist.Key key = segment.key;
+            if (key == null) continue;
+            if (!METHOD_AES_128.equals(key.method)) {
+                throw new IOException("Unsupported encryption: " + key.method);
+            }
+            if (key.keyFormat != null && !"identity".equals(key.keyFormat)) {
+                throw new IOException("Unsupported key format: " + key.keyFormat);
+            }
+            if (key.uri == null || key.uri.isEmpty()) {
+                throw new IOException("Encryption key has no URI");
+            }
+            encrypted = true;
+        }
+        return encrypted;
+    }
+
+    /**
+     * Decrypt a downloaded part file in place; clear segments are left untouched
+     */
+    public void decrypt(File part, HlsPlaylist.Segment segment) throws IOException, InterruptedException {
+        if (segment.key == null) return;
+        byte[] key = getKey(segment.key.uri);
+        byte[] iv = segment.key.iv != null ? segment.key.iv : ivFromSequence(segment.sequence);
+
+        Cipher cipher = CIPHERS.get();
+        DirectBufferPool pool = DirectBufferPool.getShared();
+        ByteBuffer in = pool.acquire();
+        ByteBuffer out = pool.acquire();
+        try (RandomAccessFile file = new RandomAccessFile(part, "rw");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() % BLOCK_SIZE != 0) {
+                throw new IOException("Encrypted segment is not a whole number of blocks");
+            }
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+
+            long readPos = 0;
+            long writePos = 0;
+            // Leave room for the block the cipher may be holding back
+            int chunk = in.capacity() - BLOCK_SIZE;
+            while (true) {
+                in.clear();
+                in.limit(chunk);
+                int n = channel.read(in, readPos);
+                in.flip();
+                out.clear();
+                if (n > 0) {
+                    readPos += n;
+                    cipher.update(in, out);
+                } else {
+                    // Strips the PKCS7 padding from the last block
+                    cipher.doFinal(in, out);
+                }
+                out.flip();
+                while (out.hasRemaining()) {
+                    writePos += channel.write(out, writePos);
+                }
+                if (n <= 0) break;
+            }
+            channel.truncate(writePos);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Segment decryption failed: " + e.getMessage(), e);
+        } finally {
+            pool.release(in);
+            pool.release(out);
+        }
+    }
+
+    /**
+     * Key bytes for a key URI, fetched on first use
+     */
+    private byte[] getKey(String uri) throws IOException, InterruptedException {
+        byte[] key = keys.get(uri);
+        if (key != null) return key;
+        synchronized (keys) {
+            key = keys.get(uri);
+            if (key == null) {
+                key = fetchKeyWithRetry(uri);
+                keys.put(uri, key);
+                Log.d(TAG, "Fetched AES-128 key (" + keys.size() + " cached)");
+            }
+            return key;
+        }
+    }
+
+    private byte[] fetchKeyWithRetry(String uri) throws IOException, InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            IOException failure;
+            limiter.acquire(uri);
+            try {
+                return fetchKey(uri);
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                limiter.release(uri);
+            }
+            if (attempt >= policy.getMaxAttempts() || !policy.isRetryable(failure)) {
+                throw failure;
+            }
+            Thread.sleep(policy.backoffDelayMs(attempt, failure));
+        }
+    }
+
+    private static byte[] fetchKey(String uri) throws IOException {
+        HttpTransport.Request request = new HttpTransport.Request(uri).timeout(TIMEOUT);
+        try (HttpTransport.Response response = HttpTransport.getShared().execute(request)) {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.getStatusCode(),
+                    HttpStatusException.parseRetryAfter(response.header("Retry-After")));
+            }
+            InputStream body = response.body();
+            ByteArrayOutputStream key = new ByteArrayOutputStream(KEY_LENGTH);
+            byte[] buffer = new byte[64];
+            int n;
+            while ((n = body.read(buffer)) != -1 && key.size() <= KEY_LENGTH) {
+                key.write(buffer, 0, n);
+            }
+            if (key.size() != KEY_LENGTH) {
+                throw new IOException("Invalid AES-128 key length: " + key.size());
+            }
+            return key.toByteArray();
+        }
+    }
+
+    /**
+     * Default IV: the segment's media sequence number as a 128-bit big-endian integer
+     */
+    static byte[] ivFromSequence(long sequence) {
+        byte[] iv = new byte[BLOCK_SIZE];
+        for (int i = 0; i < 8; i++) {
+            iv[BLOCK_SIZE - 1 - i] = (byte) (sequence >>> (8 * i));
+        }
+        return iv;
+    }
+}
@@ -0,0 +1,120 @@
+package com.reelview.app;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool for HLS segment fetches
+ * Keeps up to N segments in flight and hands results back in playlist order
+ */
+public class SegmentFetchPool implements Closeable {
+    private final ExecutorService executor;
+    private final int concurrency;
+
+    /**
+     * Fetches a single segment by playlist index
+     */
+    public interface SegmentTask<T> {
+        T fetch(int index) throws IOException, InterruptedException;
+    }
+
+    public SegmentFetchPool(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.concurrency, r -> {
+            Thread t = new Thread(r, "HLSSegment-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start fetching segments [start, end) and return an in-order view of the results.
+     * At most twice the concurrency level is scheduled ahead of the consumer, so a slow
+     * head segment cannot make completed results pile up without bound.
+     */
+    public <T> OrderedResults<T> fetchInOrder(int start, int end, SegmentTask<T> task) {
+        return new OrderedResults<>(start, end, task, concurrency * 2);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * In-order iterator over segment results
+     */
+    public class OrderedResults<T> {
+        private final int end;
+        private final SegmentTask<T> task;
+        private final int window;
+        private final ArrayDeque<Future<T>> inFlight = new ArrayDeque<>();
+        private int nextToSubmit;
+        private int nextToReturn;
+
+        OrderedResults(int start, int end, SegmentTask<T> task, int window) {
+            this.end = end;
+            this.task = task;
+            this.window = window;
+            this.nextToSubmit = start;
+            this.nextToReturn = start;
+            fill();
+        }
+
+        public boolean hasNext() {
+            return nextToReturn < end;
+        }
+
+        /**
+         * Block until the next segment in playlist order is available
+         */
+        public T next() throws IOException {
+            Future<T> head = inFlight.poll();
+            if (head == null) {
+                throw new IllegalStateException("No more segments");
+            }
+            try {
+                T result = head.get();
+                nextToReturn++;
+                fill();
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelAll();
+                throw new InterruptedIOException("Download interrupted");
+            } catch (ExecutionException e) {
+                cancelAll();
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof InterruptedException) {
+                    throw new InterruptedIOException("Download interrupted");
+                }
+                throw new IOException("Segment " + nextToReturn + " failed: " + cause, cause);
+            }
+        }
+
+        private void fill() {
+            while (nextToSubmit < end && inFlight.size() < window) {
+                final int index = nextToSubmit++;
+                inFlight.add(executor.submit(() -> task.fetch(index)));
+            }
+        }
+
+        private void cancelAll() {
+            for (Future<T> future : inFlight) {
+                future.cancel(true);
+            }
+            inFlight.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.reelview.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes downloaded segments to the output file in playlist order
+ * Fetch workers stream each segment from the socket into its own part file; the part
+ * is then transferred into the output channel and deleted, so heap use stays constant
+ * regardless of title length.
+ * A writer opened at a non-zero offset truncates any torn tail and continues from there.
+ */
+public class SegmentFileWriter implements Closeable {
+    private final File outputFile;
+    private final File partsDir;
+    private final RandomAccessFile outputFileHandle;
+    private final FileChannel outputChannel;
+    private long position;
+
+    public SegmentFileWriter(File outputFile, File partsDir) throws IOException {
+        this(outputFile, partsDir, 0);
+    }
+
+    public SegmentFileWriter(File outputFile, File partsDir, long resumeOffset) throws IOException {
+        this.outputFile = outputFile;
+        this.partsDir = partsDir;
+        if (!partsDir.exists() && !partsDir.mkdirs()) {
+            throw new IOException("Cannot create parts directory: " + partsDir.getAbsolutePath());
+        }
+        this.outputFileHandle = new RandomAccessFile(outputFile, "rw");
+        this.outputChannel = outputFileHandle.getChannel();
+        long start = Math.min(Math.max(0, resumeOffset), outputChannel.size());
+        outputChannel.truncate(start);
+        outputChannel.position(start);
+        this.position = start;
+    }
+
+    /**
+     * Part file that the fetch worker for the given segment should write to
+     */
+    public File partFile(int index) {
+        return new File(partsDir, "seg_" + index + ".part");
+    }
+
+    /**
+     * Append a completed part to the output and delete it
+     * @return number of bytes appended
+     */
+    public long append(File part) throws IOException {
+        long length;
+        try (FileInputStream in = new FileInputStream(part);
+             FileChannel source = in.getChannel()) {
+            length = source.size();
+            long transferred = 0;
+            while (transferred < length) {
+                long n = source.transferTo(transferred, length - transferred, outputChannel);
+                if (n <= 0) {
+                    throw new IOException("Failed to append " + part.getName());
+                }
+                transferred += n;
+            }
+        }
+        position += length;
+        part.delete();
+        return length;
+    }
+
+    /**
+     * Flush appended data to the storage device so it survives a process kill
+     */
+    public void sync() throws IOException {
+        outputChannel.force(false);
+    }
+
+    /**
+     * Bytes written to the output so far
+     */
+    public long size() {
+        return position;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            outputChannel.force(false);
+        } finally {
+            outputFileHandle.close();
+            deleteParts();
+        }
+    }
+
+    private void deleteParts() {
+        File[] leftovers = partsDir.listFiles();
+        if (leftovers != null) {
+            for (File f : leftovers) {
+                f.delete();
+            }
+        }
+        partsDir.delete();
+    }
+}
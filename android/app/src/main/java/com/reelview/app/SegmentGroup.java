@@ -0,0 +1,65 @@
+package com.reelview.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consecutive segments fetched with a single request
+ * EXT-X-BYTERANGE segments that follow each other in the same resource are merged into one
+ * Range request; every other segment is a group of its own covering the whole resource.
+ */
+public class SegmentGroup {
+    public static final long DEFAULT_MAX_GROUP_BYTES = 8 * 1024 * 1024;
+
+    public final String url;
+    public final int firstIndex;
+    public final int count;
+    /** First byte of the merged range, or -1 for a whole-resource segment */
+    public final long offset;
+    public final long length;
+
+    private SegmentGroup(String url, int firstIndex, int count, long offset, long length) {
+        this.url = url;
+        this.firstIndex = firstIndex;
+        this.count = count;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public boolean isByteRange() {
+        return offset >= 0;
+    }
+
+    /**
+     * Split segments from {@code startIndex} on into fetch groups of at most {@code maxGroupBytes}
+     * (a single larger segment still forms its own group)
+     */
+    public static List<SegmentGroup> plan(List<HlsPlaylist.Segment> segments, int startIndex, long maxGroupBytes) {
+        List<SegmentGroup> groups = new ArrayList<>();
+        int i = startIndex;
+        while (i < segments.size()) {
+            HlsPlaylist.Segment first = segments.get(i);
+            if (!first.hasByteRange()) {
+                groups.add(new SegmentGroup(first.url, i, 1, -1, -1));
+                i++;
+                continue;
+            }
+
+            int end = i + 1;
+            long length = first.byteRangeLength;
+            while (end < segments.size()) {
+                HlsPlaylist.Segment next = segments.get(end);
+                if (!next.hasByteRange() || !next.url.equals(first.url)
+                        || next.byteRangeOffset != first.byteRangeOffset + length
+                        || length + next.byteRangeLength > maxGroupBytes) {
+                    break;
+                }
+                length += next.byteRangeLength;
+                end++;
+            }
+            groups.add(new SegmentGroup(first.url, i, end - i, first.byteRangeOffset, length));
+            i = end;
+        }
+        return groups;
+    }
+}
@@ -0,0 +1,80 @@
+package com.reelview.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel copy helpers for the segment write path
+ */
+public final class SegmentIO {
+
+    private SegmentIO() {}
+
+    /**
+     * Copy a source channel into a file channel with positional writes starting at {@code position}
+     * @return number of bytes copied
+     */
+    public static long copy(ReadableByteChannel source, FileChannel target, long position, ByteBuffer buffer)
+            throws IOException {
+        long copied = 0;
+        buffer.clear();
+        while (source.read(buffer) != -1) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += target.write(buffer, position + copied);
+            }
+            buffer.clear();
+        }
+        return copied;
+    }
+
+    /**
+     * Copy at most {@code limit} bytes, stopping early only at end of stream
+     * @return number of bytes copied
+     */
+    public static long copy(ReadableByteChannel source, FileChannel target, long position, long limit, ByteBuffer buffer)
+            throws IOException {
+        long copied = 0;
+        while (copied < limit) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), limit - copied));
+            if (source.read(buffer) == -1) break;
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                copied += target.write(buffer, position + copied);
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * Read and discard {@code count} bytes
+     * @return false if the stream ended first
+     */
+    public static boolean skip(ReadableByteChannel source, long count, ByteBuffer buffer) throws IOException {
+        long skipped = 0;
+        while (skipped < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - skipped));
+            int n = source.read(buffer);
+            if (n == -1) return false;
+            skipped += n;
+        }
+        return true;
+    }
+
+    /**
+     * Copy a source channel into a file channel using a buffer borrowed from the pool
+     */
+    public static long copy(ReadableByteChannel source, FileChannel target, long position, DirectBufferPool pool)
+            throws IOException {
+        ByteBuffer buffer = pool.acquire();
+        try {
+            return copy(source, target, position, buffer);
+        } finally {
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.reelview.app;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * On-disk journal of segments durably written to a download's output file
+ * Segments are appended in playlist order, so the journal records the committed prefix:
+ * one "index endOffset" line per segment, written only after the output has been synced.
+ * A restarted download reads it back and fetches only the segments after that prefix.
+ */
+public class SegmentJournal implements Closeable {
+    private static final String HEADER = "# reelview-journal v1";
+
+    private final File file;
+    private FileOutputStream out;
+
+    // Committed prefix recovered from disk (or written so far)
+    private String playlistKey;
+    private int segmentCount;
+    private int committedSegments = 0;
+    private long committedBytes = 0;
+    private long[] endOffsets = new long[64];
+
+    private SegmentJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Open an existing journal for resume if it matches the playlist, otherwise start a fresh one
+     */
+    public static SegmentJournal openOrCreate(File file, String playlistUrl, int segmentCount) throws IOException {
+        SegmentJournal journal = new SegmentJournal(file);
+        String key = playlistKey(playlistUrl);
+        if (!journal.read() || !key.equals(journal.playlistKey) || journal.segmentCount != segmentCount) {
+            journal.playlistKey = key;
+            journal.segmentCount = segmentCount;
+            journal.committedSegments = 0;
+            journal.committedBytes = 0;
+            journal.out = new FileOutputStream(file, false);
+            journal.writeLine(HEADER);
+            journal.writeLine("playlist " + key);
+            journal.writeLine("segments " + segmentCount);
+            journal.sync();
+        } else {
+            journal.out = new FileOutputStream(file, true);
+        }
+        return journal;
+    }
+
+    /**
+     * Number of leading segments already written to the output
+     */
+    public int getCommittedSegments() {
+        return committedSegments;
+    }
+
+    /**
+     * Output size covering the committed segments; anything beyond it is a torn write
+     */
+    public long getCommittedBytes() {
+        return committedBytes;
+    }
+
+    /**
+     * Output offset just past committed segment {@code index}
+     */
+    public long getEndOffset(int index) {
+        if (index < 0 || index >= committedSegments) {
+            throw new IndexOutOfBoundsException("Segment " + index + " is not committed");
+        }
+        return endOffsets[index];
+    }
+
+    /**
+     * Record that segment {@code index} is durably written and the output now ends at {@code endOffset}
+     */
+    public void commit(int index, long endOffset) throws IOException {
+        if (index != committedSegments) {
+            throw new IOException("Journal out of order: expected segment " + committedSegments + ", got " + index);
+        }
+        writeLine(index + " " + endOffset);
+        sync();
+        recordCommitted(index, endOffset);
+    }
+
+    /**
+     * Remove the journal once the download has completed
+     */
+    public void delete() {
+        try {
+            close();
+        } catch (IOException ignored) {}
+        file.delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private boolean read() {
+        if (!file.exists()) return false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) return false;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("playlist ")) {
+                    playlistKey = line.substring(9);
+                } else if (line.startsWith("segments ")) {
+                    segmentCount = Integer.parseInt(line.substring(9).trim());
+                } else {
+                    int space = line.indexOf(' ');
+                    if (space <= 0) break; // torn trailing line
+                    int index;
+                    long endOffset;
+                    try {
+                        index = Integer.parseInt(line.substring(0, space));
+                        endOffset = Long.parseLong(line.substring(space + 1).trim());
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                    if (index != committedSegments) break;
+                    recordCommitted(index, endOffset);
+                }
+            }
+            return playlistKey != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void recordCommitted(int index, long endOffset) {
+        if (index >= endOffsets.length) {
+            endOffsets = Arrays.copyOf(endOffsets, Math.max(index + 1, endOffsets.length * 2));
+        }
+        endOffsets[index] = endOffset;
+        committedSegments = index + 1;
+        committedBytes = endOffset;
+    }
+
+    private void writeLine(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        out.getFD().sync();
+    }
+
+    /**
+     * Playlist identity without the query string, which usually carries short-lived auth tokens
+     */
+    private static String playlistKey(String url) {
+        int query = url.indexOf('?');
+        return query >= 0 ? url.substring(0, query) : url;
+    }
+}
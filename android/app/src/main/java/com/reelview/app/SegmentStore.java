@@ -0,0 +1,508 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Content-addressed on-disk store of segment bodies, shared by all downloads
+ * Entries are keyed by segment URL (plus byte range) and point at a blob named by the SHA-256
+ * of its content, so the same intro or slate reached through several URLs is kept once. The
+ * store is bounded by total blob size and evicts least recently used entries. Bodies are kept
+ * decrypted, as appended to the output, and the key includes the encryption key and IV, so a
+ * hit skips both the network and the cipher. Inserts take a staged snapshot of the segment and
+ * copy it in on the writer thread, off the fetch path; restores verify the content digest.
+ * The index is read on the writer thread as well; until then every lookup is a miss.
+ */
+public class SegmentStore {
+    private static final String TAG = "SegmentStore";
+    // Version 1 kept encrypted bodies; its entries are discarded
+    private static final int FORMAT_VERSION = 2;
+    private static final String INDEX_NAME = "index.json";
+    private static final String BLOB_SUFFIX = ".seg";
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+    // Tokenized segment URLs rarely outlive a week; older entries are dropped on lookup
+    public static final long DEFAULT_MAX_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+    // One title may fill at most this fraction of the store, so a long title cannot cycle it alone
+    private static final int TITLE_SHARE_DIVISOR = 4;
+
+    /**
+     * Index entry: one segment URL and the blob holding its body
+     */
+    public static class Entry {
+        public final String key;
+        public final String hash;
+        public final long length;
+        final long storedAt;
+
+        Entry(String key, String hash, long length, long storedAt) {
+            this.key = key;
+            this.hash = hash;
+            this.length = length;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final File dir;
+    private final long maxAgeMs;
+    private long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Index entries referring to each blob; a blob is deleted when its last entry goes
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private long totalBytes = 0;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "SegmentStoreWriter");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    // Guarded by this; set once the index has been read
+    private boolean loaded = false;
+    // Cleared before the index was read: its entries must not come back
+    private boolean clearedBeforeLoad = false;
+
+    public SegmentStore(File dir) {
+        this(dir, DEFAULT_MAX_BYTES, DEFAULT_MAX_AGE_MS);
+    }
+
+    public SegmentStore(File dir, long maxBytes, long maxAgeMs) {
+        this.dir = dir;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Read the index on the writer thread; call once after construction
+     */
+    public void loadAsync() {
+        writer.execute(this::load);
+    }
+
+    /**
+     * Store key for a segment: its URL, byte range, and the key and IV it is decrypted with
+     */
+    public static String key(HlsPlaylist.Segment segment) {
+        StringBuilder key = new StringBuilder(segment.url);
+        if (segment.hasByteRange()) {
+            key.append("#bytes=").append(segment.byteRangeOffset).append('-')
+                .append(segment.byteRangeOffset + segment.byteRangeLength - 1);
+        }
+        if (segment.key != null) {
+            key.append("#key=").append(segment.key.uri).append("#iv=");
+            if (segment.key.iv != null) {
+                for (byte b : segment.key.iv) {
+                    key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+            } else {
+                key.append("seq").append(segment.sequence);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Entry for the key, or null if absent, expired or not loaded yet; a hit becomes most recently used
+     */
+    public synchronized Entry get(String key) {
+        if (!loaded) return null;
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.storedAt > maxAgeMs) {
+            removeEntry(entry);
+            scheduleSave();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Whether the key is stored, without counting as a use; false until the index is loaded
+     */
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Copy a stored body into a part file, checking its length and SHA-256 on the way
+     * @return false if the blob is gone or damaged; the entry is dropped and the part removed
+     */
+    public boolean restore(Entry entry, File target) {
+        File blob = blobFile(entry.hash);
+        if (blob.length() == entry.length) {
+            try {
+                String hash = copyHashing(blob, 0, entry.length, target);
+                if (hash.equals(entry.hash)) {
+                    return true;
+                }
+                Log.w(TAG, "Stored segment " + entry.hash + " is corrupt, dropping it");
+            } catch (IOException e) {
+                Log.w(TAG, "Could not restore " + entry.hash + ": " + e.getMessage());
+            }
+        }
+        target.delete();
+        synchronized (this) {
+            // Every key sharing the blob would fail the same way
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry other = it.next();
+                if (other.hash.equals(entry.hash)) {
+                    it.remove();
+                    release(other);
+                }
+            }
+            scheduleSave();
+        }
+        return false;
+    }
+
+    /**
+     * Take over a staged snapshot of a segment body and store it on the writer thread
+     * The snapshot must not change once handed over; it is deleted when the insert is done or
+     * skipped. Keys already stored are skipped. The insert is queued behind the index load.
+     */
+    public void putAsync(final String key, final File staged) {
+        final long length = staged.length();
+        synchronized (this) {
+            if (length <= 0 || length > maxBytes || entries.containsKey(key)) {
+                staged.delete();
+                return;
+            }
+        }
+        writer.execute(() -> {
+            try {
+                put(key, staged, length);
+            } finally {
+                staged.delete();
+            }
+        });
+    }
+
+    /**
+     * Most bytes one title should insert, a fixed share of the size bound
+     */
+    public synchronized long getTitleBudget() {
+        return maxBytes / TITLE_SHARE_DIVISOR;
+    }
+
+    /**
+     * Add a body on the writer thread
+     * Failures are only logged: the store saves bandwidth but a download never depends on it.
+     */
+    private void put(String key, File source, long length) {
+        // Read the index first: the orphan sweep must not catch this insert's temp file
+        load();
+        File tmp = null;
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            // Hash while copying to a temp file so the blob name is known before it is visible
+            tmp = File.createTempFile("put", ".tmp", dir);
+            String hash = copyHashing(source, 0, length, tmp);
+            File blob = blobFile(hash);
+            synchronized (this) {
+                Entry previous = entries.get(key);
+                if (previous != null && previous.hash.equals(hash)) {
+                    return;
+                }
+                if (!blob.exists() && !tmp.renameTo(blob)) {
+                    throw new IOException("rename failed");
+                }
+                if (previous != null) {
+                    removeEntry(previous);
+                }
+                Entry entry = new Entry(key, hash, length, System.currentTimeMillis());
+                entries.put(key, entry);
+                retain(entry);
+                trim();
+                scheduleSave();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store segment: " + e.getMessage());
+        } finally {
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Change the size bound, evicting immediately if the store is now over it; 0 empties and disables it
+     */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        // Before the index is read there is nothing to evict; the load trims to the new bound
+        if (loaded && trim()) {
+            scheduleSave();
+        }
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Bytes held by blobs, counting a blob shared by several entries once, or -1 until the index is loaded
+     */
+    public synchronized long getTotalBytes() {
+        return loaded ? totalBytes : -1;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        if (!loaded) {
+            clearedBeforeLoad = true;
+        }
+        for (Entry entry : new ArrayList<>(entries.values())) {
+            removeEntry(entry);
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Evict least recently used entries until the blobs fit the size bound
+     * @return whether anything was evicted
+     */
+    private boolean trim() {
+        boolean evicted = false;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            release(entry);
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    private void removeEntry(Entry entry) {
+        entries.remove(entry.key);
+        release(entry);
+    }
+
+    private void retain(Entry entry) {
+        Integer refs = blobRefs.get(entry.hash);
+        if (refs == null) {
+            totalBytes += entry.length;
+            refs = 0;
+        }
+        blobRefs.put(entry.hash, refs + 1);
+    }
+
+    private void release(Entry entry) {
+        Integer refs = blobRefs.get(entry.hash);
+        if (refs == null) return;
+        if (refs > 1) {
+            blobRefs.put(entry.hash, refs - 1);
+            return;
+        }
+        blobRefs.remove(entry.hash);
+        totalBytes -= entry.length;
+        blobFile(entry.hash).delete();
+    }
+
+    private File blobFile(String hash) {
+        return new File(dir, hash + BLOB_SUFFIX);
+    }
+
+    /**
+     * Read the index, on the writer thread only
+     * Entries whose blob is missing are dropped, and so are files no entry refers to: blobs written
+     * after the last index save, or by a put that died mid-copy. Only the writer creates files in
+     * the directory, so the sweep cannot race an insert.
+     */
+    private void load() {
+        synchronized (this) {
+            if (loaded) return;
+        }
+        List<Entry> stored = new ArrayList<>();
+        File index = new File(dir, INDEX_NAME);
+        if (index.exists()) {
+            try {
+                JSONObject root = new JSONObject(readFile(index));
+                JSONArray list = root.optInt("version") == FORMAT_VERSION ? root.optJSONArray("entries") : null;
+                long now = System.currentTimeMillis();
+                for (int i = 0; list != null && i < list.length(); i++) {
+                    JSONObject item = list.optJSONObject(i);
+                    if (item == null) continue;
+                    Entry entry = new Entry(item.optString("key"), item.optString("hash"),
+                        item.optLong("length"), item.optLong("storedAt"));
+                    if (now - entry.storedAt > maxAgeMs || blobFile(entry.hash).length() != entry.length
+                            || entry.length <= 0) {
+                        continue;
+                    }
+                    stored.add(entry);
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Discarding unreadable segment index: " + e.getMessage());
+                stored.clear();
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        int count;
+        long bytes;
+        synchronized (this) {
+            if (!clearedBeforeLoad) {
+                for (Entry entry : stored) {
+                    entries.put(entry.key, entry);
+                    retain(entry);
+                }
+            }
+            trim();
+            for (String hash : blobRefs.keySet()) {
+                referenced.add(hash + BLOB_SUFFIX);
+            }
+            count = entries.size();
+            bytes = totalBytes;
+            loaded = true;
+        }
+        File[] files = dir.listFiles();
+        int orphans = 0;
+        for (int i = 0; files != null && i < files.length; i++) {
+            String name = files[i].getName();
+            if (!name.equals(INDEX_NAME) && !referenced.contains(name) && files[i].delete()) {
+                orphans++;
+            }
+        }
+        Log.d(TAG, "Loaded " + count + " stored segments (" + (bytes / 1024 / 1024) + " MB)"
+            + (orphans > 0 ? ", removed " + orphans + " orphaned files" : ""));
+    }
+
+    /**
+     * Persist on the writer thread; several changes in a row produce a single write
+     */
+    private void scheduleSave() {
+        if (!savePending.compareAndSet(false, true)) return;
+        writer.execute(() -> {
+            savePending.set(false);
+            // Never overwrite the index before its entries have been read
+            load();
+            save();
+        });
+    }
+
+    private void save() {
+        List<Entry> snapshot;
+        synchronized (this) {
+            // LRU order, eldest first, so reloading restores the same eviction order
+            snapshot = new ArrayList<>(entries.values());
+        }
+        try {
+            JSONArray list = new JSONArray();
+            for (Entry entry : snapshot) {
+                JSONObject item = new JSONObject();
+                item.put("key", entry.key);
+                item.put("hash", entry.hash);
+                item.put("length", entry.length);
+                item.put("storedAt", entry.storedAt);
+                list.put(item);
+            }
+            JSONObject root = new JSONObject();
+            root.put("version", FORMAT_VERSION);
+            root.put("entries", list);
+
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            // Write a temp file and rename so a crash never leaves a truncated index
+            File index = new File(dir, INDEX_NAME);
+            File tmp = new File(dir, INDEX_NAME + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(index)) {
+                throw new IOException("rename failed");
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not persist segment index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copy a range of a file through a pooled direct buffer, hashing the bytes on the way
+     * @return lowercase hex SHA-256 of the content
+     */
+    private static String copyHashing(File source, long offset, long length, File target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 unavailable", e);
+        }
+        DirectBufferPool pool = DirectBufferPool.getShared();
+        ByteBuffer buffer = pool.acquire();
+        try (FileInputStream in = new FileInputStream(source);
+             FileChannel input = in.getChannel();
+             FileOutputStream out = new FileOutputStream(target);
+             FileChannel output = out.getChannel()) {
+            long copied = 0;
+            while (copied < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+                int n = input.read(buffer, offset + copied);
+                if (n < 0) {
+                    throw new IOException("Source shorter than segment");
+                }
+                copied += n;
+                buffer.flip();
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+                while (buffer.hasRemaining()) {
+                    output.write(buffer);
+                }
+            }
+        } finally {
+            pool.release(buffer);
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                content.write(buffer, 0, n);
+            }
+            return content.toString("UTF-8");
+        }
+    }
+}
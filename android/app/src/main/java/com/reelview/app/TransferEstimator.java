@@ -0,0 +1,132 @@
+package com.reelview.app;
+
+import java.util.List;
+
+/**
+ * Byte-based progress, smoothed throughput and ETA for one download
+ * The total size is extrapolated from the bytes per second of media seen so far and the
+ * playlist's EXTINF durations (or taken exactly when every segment has a byte range).
+ * Throughput is an exponentially weighted moving average with a time constant, so samples
+ * taken at irregular segment boundaries weigh by how much time they cover.
+ */
+public class TransferEstimator {
+    private static final double DEFAULT_TIME_CONSTANT_SECONDS = 5.0;
+    // Throughput is not reported until it covers at least this much time
+    private static final double WARMUP_SECONDS = 1.0;
+
+    private final double totalDuration;
+    private final long exactTotalBytes;
+    private final double timeConstantSeconds;
+
+    private long bytesDone;
+    private double durationDone;
+    private double bytesPerSecond;
+    private double observedSeconds;
+    private long lastSampleNanos;
+    private long lastSampleBytes;
+
+    /**
+     * @param totalDuration sum of EXTINF durations, or 0 when unknown (live)
+     * @param exactTotalBytes total size when known from byte ranges, otherwise -1
+     */
+    public TransferEstimator(double totalDuration, long exactTotalBytes) {
+        this(totalDuration, exactTotalBytes, DEFAULT_TIME_CONSTANT_SECONDS);
+    }
+
+    public TransferEstimator(double totalDuration, long exactTotalBytes, double timeConstantSeconds) {
+        this.totalDuration = totalDuration;
+        this.exactTotalBytes = exactTotalBytes;
+        this.timeConstantSeconds = timeConstantSeconds;
+    }
+
+    /**
+     * Exact output size when every segment carries an EXT-X-BYTERANGE, else -1
+     */
+    public static long exactSize(List<HlsPlaylist.Segment> segments) {
+        long total = 0;
+        for (HlsPlaylist.Segment segment : segments) {
+            if (!segment.hasByteRange()) return -1;
+            total += segment.byteRangeLength;
+        }
+        return total;
+    }
+
+    /**
+     * Count media already on disk from an earlier run; it advances progress but not throughput
+     */
+    public void resumed(long bytes, double duration) {
+        bytesDone += bytes;
+        durationDone += duration;
+    }
+
+    /**
+     * A segment of the given size and EXTINF duration was written
+     */
+    public void onSegment(long bytes, double duration) {
+        bytesDone += bytes;
+        durationDone += duration;
+    }
+
+    /**
+     * Feed the running count of bytes received from the network
+     */
+    public void sample(long transferredBytes, long nowNanos) {
+        if (lastSampleNanos == 0) {
+            lastSampleNanos = nowNanos;
+            lastSampleBytes = transferredBytes;
+            return;
+        }
+        double seconds = (nowNanos - lastSampleNanos) / 1e9;
+        if (seconds <= 0) return;
+        double rate = (transferredBytes - lastSampleBytes) / seconds;
+        if (observedSeconds == 0) {
+            bytesPerSecond = rate;
+        } else {
+            double alpha = 1 - Math.exp(-seconds / timeConstantSeconds);
+            bytesPerSecond += alpha * (rate - bytesPerSecond);
+        }
+        observedSeconds += seconds;
+        lastSampleNanos = nowNanos;
+        lastSampleBytes = transferredBytes;
+    }
+
+    public long getBytesDone() {
+        return bytesDone;
+    }
+
+    /**
+     * Expected final size, or -1 until there is enough media to extrapolate from
+     */
+    public long getEstimatedTotalBytes() {
+        if (exactTotalBytes >= 0) return exactTotalBytes;
+        if (totalDuration <= 0 || durationDone <= 0) return -1;
+        return Math.max(bytesDone, (long) (bytesDone / durationDone * totalDuration));
+    }
+
+    /**
+     * Completed fraction 0..1 by bytes, falling back to duration before any size is known
+     */
+    public double getFraction() {
+        long total = getEstimatedTotalBytes();
+        if (total > 0) return Math.min(1.0, bytesDone / (double) total);
+        if (totalDuration > 0) return Math.min(1.0, durationDone / totalDuration);
+        return 0;
+    }
+
+    /**
+     * Smoothed network throughput, or 0 during warmup
+     */
+    public double getBytesPerSecond() {
+        return observedSeconds >= WARMUP_SECONDS ? bytesPerSecond : 0;
+    }
+
+    /**
+     * Seconds left at the smoothed throughput, or -1 when unknown
+     */
+    public long getEtaSeconds() {
+        long total = getEstimatedTotalBytes();
+        double rate = getBytesPerSecond();
+        if (total < 0 || rate <= 0) return -1;
+        return (long) Math.ceil(Math.max(0, total - bytesDone) / rate);
+    }
+}
@@ -0,0 +1,199 @@
+package com.reelview.app;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streaming MPEG-TS demuxer
+ * Accepts transport stream bytes in arbitrary chunks, follows PAT/PMT and reassembles
+ * PES packets per elementary stream. Only the PES payload and its timestamps are handed on.
+ */
+public class TsDemuxer {
+    public static final int PACKET_SIZE = 188;
+    public static final int STREAM_TYPE_AAC = 0x0F;
+    public static final int STREAM_TYPE_H264 = 0x1B;
+    public static final long NO_TIMESTAMP = -1;
+
+    private static final int SYNC_BYTE = 0x47;
+
+    /**
+     * Receives reassembled PES payloads; timestamps are raw 33-bit 90 kHz values
+     */
+    public interface Listener {
+        void onPes(int pid, int streamType, long pts, long dts, byte[] data, int offset, int length);
+    }
+
+    private static class PesBuffer {
+        final int streamType;
+        byte[] data = new byte[64 * 1024];
+        int length = 0;
+        boolean started = false;
+
+        PesBuffer(int streamType) {
+            this.streamType = streamType;
+        }
+
+        void append(byte[] src, int offset, int count) {
+            if (length + count > data.length) {
+                byte[] grown = new byte[Math.max(data.length * 2, length + count)];
+                System.arraycopy(data, 0, grown, 0, length);
+                data = grown;
+            }
+            System.arraycopy(src, offset, data, length, count);
+            length += count;
+        }
+    }
+
+    private final Listener listener;
+    private final byte[] packet = new byte[PACKET_SIZE];
+    private int packetFill = 0;
+    private int pmtPid = -1;
+    private final Map<Integer, PesBuffer> streams = new HashMap<>();
+
+    public TsDemuxer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Stream types found in the PMT, keyed by PID
+     */
+    public Map<Integer, Integer> getStreamTypes() {
+        Map<Integer, Integer> types = new HashMap<>();
+        for (Map.Entry<Integer, PesBuffer> entry : streams.entrySet()) {
+            types.put(entry.getKey(), entry.getValue().streamType);
+        }
+        return types;
+    }
+
+    /**
+     * Feed transport stream bytes; partial packets are carried over to the next call
+     */
+    public void feed(byte[] data, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+        while (pos < end) {
+            if (packetFill == 0) {
+                // Resync on the next sync byte if the stream is misaligned
+                while (pos < end && (data[pos] & 0xFF) != SYNC_BYTE) {
+                    pos++;
+                }
+                if (pos >= end) break;
+            }
+            int count = Math.min(PACKET_SIZE - packetFill, end - pos);
+            System.arraycopy(data, pos, packet, packetFill, count);
+            packetFill += count;
+            pos += count;
+            if (packetFill == PACKET_SIZE) {
+                parsePacket(packet);
+                packetFill = 0;
+            }
+        }
+    }
+
+    /**
+     * Emit any PES still being assembled, e.g. at end of stream
+     */
+    public void flush() {
+        for (Map.Entry<Integer, PesBuffer> entry : streams.entrySet()) {
+            emitPes(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void parsePacket(byte[] p) {
+        boolean payloadStart = (p[1] & 0x40) != 0;
+        int pid = ((p[1] & 0x1F) << 8) | (p[2] & 0xFF);
+        int adaptationControl = (p[3] >> 4) & 0x03;
+
+        int offset = 4;
+        if ((adaptationControl & 0x02) != 0) {
+            offset += 1 + (p[4] & 0xFF);
+        }
+        if ((adaptationControl & 0x01) == 0 || offset >= PACKET_SIZE) {
+            return;
+        }
+
+        if (pid == 0) {
+            if (payloadStart) parsePat(p, offset);
+        } else if (pid == pmtPid) {
+            if (payloadStart) parsePmt(p, offset);
+        } else {
+            PesBuffer pes = streams.get(pid);
+            if (pes == null) return;
+            if (payloadStart) {
+                emitPes(pid, pes);
+                pes.started = true;
+            }
+            if (pes.started) {
+                pes.append(p, offset, PACKET_SIZE - offset);
+            }
+        }
+    }
+
+    private void parsePat(byte[] p, int offset) {
+        offset += 1 + (p[offset] & 0xFF); // pointer field
+        if (offset + 8 > PACKET_SIZE || (p[offset] & 0xFF) != 0x00) return;
+        int sectionLength = ((p[offset + 1] & 0x0F) << 8) | (p[offset + 2] & 0xFF);
+        int end = Math.min(offset + 3 + sectionLength - 4, PACKET_SIZE);
+        for (int i = offset + 8; i + 4 <= end; i += 4) {
+            int programNumber = ((p[i] & 0xFF) << 8) | (p[i + 1] & 0xFF);
+            if (programNumber != 0) {
+                pmtPid = ((p[i + 2] & 0x1F) << 8) | (p[i + 3] & 0xFF);
+                return;
+            }
+        }
+    }
+
+    private void parsePmt(byte[] p, int offset) {
+        offset += 1 + (p[offset] & 0xFF); // pointer field
+        if (offset + 12 > PACKET_SIZE || (p[offset] & 0xFF) != 0x02) return;
+        int sectionLength = ((p[offset + 1] & 0x0F) << 8) | (p[offset + 2] & 0xFF);
+        int programInfoLength = ((p[offset + 10] & 0x0F) << 8) | (p[offset + 11] & 0xFF);
+        int end = Math.min(offset + 3 + sectionLength - 4, PACKET_SIZE);
+        int i = offset + 12 + programInfoLength;
+        while (i + 5 <= end) {
+            int streamType = p[i] & 0xFF;
+            int esPid = ((p[i + 1] & 0x1F) << 8) | (p[i + 2] & 0xFF);
+            int esInfoLength = ((p[i + 3] & 0x0F) << 8) | (p[i + 4] & 0xFF);
+            if (!streams.containsKey(esPid)) {
+                streams.put(esPid, new PesBuffer(streamType));
+            }
+            i += 5 + esInfoLength;
+        }
+    }
+
+    private void emitPes(int pid, PesBuffer pes) {
+        if (!pes.started || pes.length < 9) {
+            pes.length = 0;
+            return;
+        }
+        byte[] d = pes.data;
+        if (d[0] != 0 || d[1] != 0 || d[2] != 1) {
+            pes.length = 0;
+            return;
+        }
+        int ptsDtsFlags = (d[7] >> 6) & 0x03;
+        int headerLength = d[8] & 0xFF;
+        long pts = NO_TIMESTAMP;
+        long dts = NO_TIMESTAMP;
+        if ((ptsDtsFlags & 0x02) != 0 && pes.length >= 14) {
+            pts = readTimestamp(d, 9);
+            dts = pts;
+        }
+        if (ptsDtsFlags == 0x03 && pes.length >= 19) {
+            dts = readTimestamp(d, 14);
+        }
+        int payloadOffset = 9 + headerLength;
+        if (payloadOffset < pes.length) {
+            listener.onPes(pid, pes.streamType, pts, dts, d, payloadOffset, pes.length - payloadOffset);
+        }
+        pes.length = 0;
+    }
+
+    private static long readTimestamp(byte[] d, int i) {
+        return (((long) (d[i] & 0x0E)) << 29)
+            | ((long) (d[i + 1] & 0xFF) << 22)
+            | ((long) (d[i + 2] & 0xFE) << 14)
+            | ((long) (d[i + 3] & 0xFF) << 7)
+            | ((long) (d[i + 4] & 0xFE) >> 1);
+    }
+}
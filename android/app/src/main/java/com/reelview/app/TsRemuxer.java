@@ -0,0 +1,464 @@
+package com.reelview.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Pure-Java MPEG-TS to MP4 remuxer for H.264 video and AAC (ADTS) audio
+ * Transport stream bytes are fed as segments arrive and samples go straight into the
+ * MP4 mdat, so no second pass over the downloaded file is needed. Other codecs are
+ * reported as unsupported and the caller keeps the original transport stream.
+ */
+public class TsRemuxer implements Closeable, TsDemuxer.Listener {
+    private static final int VIDEO_TIMESCALE = 90000;
+    private static final long PTS_WRAP = 1L << 33;
+    private static final long MAX_TIMESTAMP_JUMP = 10L * VIDEO_TIMESCALE;
+    private static final int DEFAULT_FRAME_DURATION = VIDEO_TIMESCALE / 25;
+    private static final int AAC_FRAME_SAMPLES = 1024;
+    private static final int[] AAC_SAMPLE_RATES = {
+        96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350
+    };
+
+    private final File outputFile;
+    private final TsDemuxer demuxer;
+    private final Mp4Writer writer;
+    private final byte[] readBuffer = new byte[64 * 1024];
+
+    // Video state
+    private int videoPid = -1;
+    private Mp4Writer.Track videoTrack;
+    private byte[] sps, pps;
+    private boolean seenKeyframe = false;
+    private final TimestampUnwrapper videoClock = new TimestampUnwrapper();
+    private long lastVideoDts = -1;
+    private final Mp4Writer.ByteArrayBuilder sample = new Mp4Writer.ByteArrayBuilder(256 * 1024);
+
+    // Audio state
+    private int audioPid = -1;
+    private Mp4Writer.Track audioTrack;
+    private final TimestampUnwrapper audioClock = new TimestampUnwrapper();
+    private long nextAudioTime = -1; // in audio timescale
+    private byte[] adtsCarry = new byte[0];
+
+    private IOException failure;
+
+    public TsRemuxer(File outputFile) throws IOException {
+        this.outputFile = outputFile;
+        this.demuxer = new TsDemuxer(this);
+        this.writer = new Mp4Writer(outputFile);
+    }
+
+    /**
+     * Feed transport stream bytes in any chunking
+     */
+    public void feed(byte[] data, int offset, int length) throws IOException {
+        demuxer.feed(data, offset, length);
+        throwIfFailed();
+    }
+
+    /**
+     * Feed the first {@code length} bytes of a transport stream file (or all of it if length < 0)
+     */
+    public void feed(File tsFile, long length) throws IOException {
+        try (InputStream in = new FileInputStream(tsFile)) {
+            long remaining = length < 0 ? Long.MAX_VALUE : length;
+            int n;
+            while (remaining > 0 && (n = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, remaining))) != -1) {
+                feed(readBuffer, 0, n);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * True once the stream has been identified and contains at least one codec we can remux
+     */
+    public boolean isSupported() {
+        for (int streamType : demuxer.getStreamTypes().values()) {
+            if (streamType == TsDemuxer.STREAM_TYPE_H264 || streamType == TsDemuxer.STREAM_TYPE_AAC) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the stream carries a track this remuxer would have to drop (e.g. HEVC or MP3)
+     */
+    public boolean hasUnsupportedTracks() {
+        for (int streamType : demuxer.getStreamTypes().values()) {
+            if (streamType != TsDemuxer.STREAM_TYPE_H264 && streamType != TsDemuxer.STREAM_TYPE_AAC
+                    && isMediaStreamType(streamType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Flush buffered samples and write the MP4 index
+     */
+    public File finish() throws IOException {
+        demuxer.flush();
+        throwIfFailed();
+        if (videoTrack != null && sps != null && pps != null) {
+            int[] size = parseSpsDimensions(sps);
+            videoTrack.setVideoConfig(sps, pps, size[0], size[1]);
+        }
+        writer.finish();
+        return outputFile;
+    }
+
+    /**
+     * Stop and delete the partial output
+     */
+    public void abort() {
+        try {
+            writer.close();
+        } catch (IOException ignored) {}
+        outputFile.delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public void onPes(int pid, int streamType, long pts, long dts, byte[] data, int offset, int length) {
+        if (failure != null) return;
+        try {
+            if (streamType == TsDemuxer.STREAM_TYPE_H264) {
+                if (videoPid < 0) {
+                    videoPid = pid;
+                    videoTrack = writer.addVideoTrack(VIDEO_TIMESCALE);
+                }
+                if (pid == videoPid) onVideoPes(pts, dts, data, offset, length);
+            } else if (streamType == TsDemuxer.STREAM_TYPE_AAC) {
+                if (audioPid < 0) {
+                    audioPid = pid;
+                }
+                if (pid == audioPid) onAudioPes(pts, data, offset, length);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        if (failure != null) throw failure;
+    }
+
+    // ---- H.264 ----
+
+    private void onVideoPes(long pts, long dts, byte[] data, int offset, int length) throws IOException {
+        sample.reset();
+        boolean keyframe = false;
+
+        int end = offset + length;
+        int nalStart = findStartCode(data, offset, end);
+        while (nalStart < end) {
+            int next = findStartCode(data, nalStart, end);
+            int nalEnd = next < end ? next - 3 : end;
+            // Trailing zero bytes belong to a 4-byte start code of the next NAL
+            while (nalEnd > nalStart && data[nalEnd - 1] == 0) nalEnd--;
+            if (nalEnd > nalStart) {
+                int type = data[nalStart] & 0x1F;
+                switch (type) {
+                    case 7:
+                        if (sps == null) sps = Arrays.copyOfRange(data, nalStart, nalEnd);
+                        break;
+                    case 8:
+                        if (pps == null) pps = Arrays.copyOfRange(data, nalStart, nalEnd);
+                        break;
+                    case 9: // access unit delimiter
+                        break;
+                    default:
+                        if (type == 5) keyframe = true;
+                        int nalLength = nalEnd - nalStart;
+                        byte[] prefix = {
+                            (byte) (nalLength >>> 24), (byte) (nalLength >>> 16), (byte) (nalLength >>> 8), (byte) nalLength
+                        };
+                        sample.append(prefix, 0, 4);
+                        sample.append(data, nalStart, nalLength);
+                }
+            }
+            nalStart = next;
+        }
+
+        if (sample.size() == 0) return;
+        if (!seenKeyframe) {
+            // Frames before the first IDR cannot be decoded
+            if (!keyframe) return;
+            seenKeyframe = true;
+        }
+
+        long sampleDts;
+        long samplePts;
+        if (dts == TsDemuxer.NO_TIMESTAMP) {
+            sampleDts = lastVideoDts < 0 ? 0 : lastVideoDts + DEFAULT_FRAME_DURATION;
+            samplePts = sampleDts;
+        } else {
+            long unwrappedDts = videoClock.unwrap(dts);
+            samplePts = unwrappedDts + ((pts - dts + PTS_WRAP) % PTS_WRAP);
+            sampleDts = unwrappedDts;
+            // Discontinuities (ad breaks, bad timestamps) continue the timeline instead of jumping
+            if (lastVideoDts >= 0 && (sampleDts <= lastVideoDts || sampleDts - lastVideoDts > MAX_TIMESTAMP_JUMP)) {
+                long shift = lastVideoDts + DEFAULT_FRAME_DURATION - sampleDts;
+                videoClock.shift(shift);
+                sampleDts += shift;
+                samplePts += shift;
+            }
+        }
+        lastVideoDts = sampleDts;
+        writer.writeSample(videoTrack, sample.array(), 0, sample.size(), sampleDts,
+            (int) (samplePts - sampleDts), keyframe);
+    }
+
+    /**
+     * Position just after the next 00 00 01 start code at or after {@code from}, or {@code end}
+     */
+    private static int findStartCode(byte[] data, int from, int end) {
+        for (int i = from; i + 2 < end; i++) {
+            if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                return i + 3;
+            }
+        }
+        return end;
+    }
+
+    // ---- AAC ----
+
+    private void onAudioPes(long pts, byte[] data, int offset, int length) throws IOException {
+        byte[] buf;
+        int pos;
+        int end;
+        int carried = adtsCarry.length;
+        if (carried > 0) {
+            buf = new byte[carried + length];
+            System.arraycopy(adtsCarry, 0, buf, 0, carried);
+            System.arraycopy(data, offset, buf, carried, length);
+            pos = 0;
+            end = buf.length;
+        } else {
+            buf = data;
+            pos = offset;
+            end = offset + length;
+        }
+        int pesStart = pos + carried;
+
+        while (pos + 7 <= end) {
+            if ((buf[pos] & 0xFF) != 0xFF || (buf[pos + 1] & 0xF0) != 0xF0) {
+                pos++;
+                continue;
+            }
+            boolean protectionAbsent = (buf[pos + 1] & 0x01) != 0;
+            int profile = (buf[pos + 2] >> 6) & 0x03;
+            int sampleRateIndex = (buf[pos + 2] >> 2) & 0x0F;
+            int channelConfig = ((buf[pos + 2] & 0x01) << 2) | ((buf[pos + 3] >> 6) & 0x03);
+            int frameLength = ((buf[pos + 3] & 0x03) << 11) | ((buf[pos + 4] & 0xFF) << 3) | ((buf[pos + 5] >> 5) & 0x07);
+            int headerLength = protectionAbsent ? 7 : 9;
+            if (sampleRateIndex >= AAC_SAMPLE_RATES.length || frameLength < headerLength) {
+                pos++;
+                continue;
+            }
+            if (pos + frameLength > end) break;
+
+            if (audioTrack == null) {
+                int sampleRate = AAC_SAMPLE_RATES[sampleRateIndex];
+                audioTrack = writer.addAudioTrack(sampleRate);
+                int config = ((profile + 1) << 11) | (sampleRateIndex << 7) | (channelConfig << 3);
+                audioTrack.setAudioConfig(new byte[] { (byte) (config >> 8), (byte) config },
+                    channelConfig, sampleRate);
+            }
+
+            int sampleRate = audioTrack.getTimescale();
+            if (pts != TsDemuxer.NO_TIMESTAMP && pos >= pesStart) {
+                // The PES timestamp belongs to the first frame that starts in this PES
+                long ptsTime = audioClock.unwrap(pts) * sampleRate / VIDEO_TIMESCALE;
+                long drift = nextAudioTime < 0 ? Long.MAX_VALUE : Math.abs(ptsTime - nextAudioTime);
+                long maxJump = MAX_TIMESTAMP_JUMP * sampleRate / VIDEO_TIMESCALE;
+                if (nextAudioTime < 0 || (drift > 2L * AAC_FRAME_SAMPLES && drift < maxJump)) {
+                    nextAudioTime = ptsTime;
+                }
+                pts = TsDemuxer.NO_TIMESTAMP;
+            }
+            if (nextAudioTime < 0) nextAudioTime = 0;
+
+            writer.writeSample(audioTrack, buf, pos + headerLength, frameLength - headerLength,
+                nextAudioTime, 0, true);
+            nextAudioTime += AAC_FRAME_SAMPLES;
+            pos += frameLength;
+        }
+
+        adtsCarry = pos < end ? Arrays.copyOfRange(buf, pos, end) : new byte[0];
+    }
+
+    private static boolean isMediaStreamType(int streamType) {
+        switch (streamType) {
+            case 0x01: case 0x02: // MPEG-1/2 video
+            case 0x03: case 0x04: // MPEG audio
+            case 0x10: // MPEG-4 video
+            case 0x11: // LATM AAC
+            case 0x24: // HEVC
+            case 0x81: case 0x87: // AC-3, E-AC-3
+            case 0xCF: case 0xDB: // SAMPLE-AES AAC / H.264
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Keeps 33-bit PES timestamps increasing across wrap-around
+     */
+    private static class TimestampUnwrapper {
+        private long last = -1;
+        private long offset = 0;
+
+        long unwrap(long raw) {
+            if (last >= 0) {
+                if (raw < last - PTS_WRAP / 2) {
+                    offset += PTS_WRAP;
+                } else if (raw > last + PTS_WRAP / 2 && offset >= PTS_WRAP) {
+                    offset -= PTS_WRAP;
+                }
+            }
+            last = raw;
+            return raw + offset;
+        }
+
+        void shift(long delta) {
+            offset += delta;
+        }
+    }
+
+    // ---- SPS ----
+
+    /**
+     * Width and height in pixels from an H.264 SPS NAL unit (including its header byte)
+     */
+    static int[] parseSpsDimensions(byte[] nal) {
+        try {
+            BitReader br = new BitReader(unescapeRbsp(nal, 1));
+            int profileIdc = br.bits(8);
+            br.bits(16); // constraint flags, level
+            br.ue(); // seq_parameter_set_id
+            int chromaFormatIdc = 1;
+            if (profileIdc == 100 || profileIdc == 110 || profileIdc == 122 || profileIdc == 244
+                    || profileIdc == 44 || profileIdc == 83 || profileIdc == 86 || profileIdc == 118
+                    || profileIdc == 128 || profileIdc == 138 || profileIdc == 139 || profileIdc == 134
+                    || profileIdc == 135) {
+                chromaFormatIdc = br.ue();
+                if (chromaFormatIdc == 3) br.bits(1);
+                br.ue(); // bit depth luma
+                br.ue(); // bit depth chroma
+                br.bits(1);
+                if (br.bits(1) == 1) { // seq_scaling_matrix_present_flag
+                    int lists = chromaFormatIdc != 3 ? 8 : 12;
+                    for (int i = 0; i < lists; i++) {
+                        if (br.bits(1) == 1) skipScalingList(br, i < 6 ? 16 : 64);
+                    }
+                }
+            }
+            br.ue(); // log2_max_frame_num_minus4
+            int pocType = br.ue();
+            if (pocType == 0) {
+                br.ue();
+            } else if (pocType == 1) {
+                br.bits(1);
+                br.se();
+                br.se();
+                int cycle = br.ue();
+                for (int i = 0; i < cycle; i++) br.se();
+            }
+            br.ue(); // max_num_ref_frames
+            br.bits(1);
+            int widthInMbs = br.ue() + 1;
+            int heightInMapUnits = br.ue() + 1;
+            int frameMbsOnly = br.bits(1);
+            if (frameMbsOnly == 0) br.bits(1);
+            br.bits(1); // direct_8x8_inference_flag
+            int cropLeft = 0, cropRight = 0, cropTop = 0, cropBottom = 0;
+            if (br.bits(1) == 1) {
+                cropLeft = br.ue();
+                cropRight = br.ue();
+                cropTop = br.ue();
+                cropBottom = br.ue();
+            }
+            int cropUnitX = chromaFormatIdc == 1 || chromaFormatIdc == 2 ? 2 : 1;
+            int cropUnitY = (chromaFormatIdc == 1 ? 2 : 1) * (2 - frameMbsOnly);
+            int width = widthInMbs * 16 - (cropLeft + cropRight) * cropUnitX;
+            int height = (2 - frameMbsOnly) * heightInMapUnits * 16 - (cropTop + cropBottom) * cropUnitY;
+            return new int[] { width, height };
+        } catch (RuntimeException e) {
+            return new int[] { 0, 0 };
+        }
+    }
+
+    private static void skipScalingList(BitReader br, int size) {
+        int last = 8;
+        int next = 8;
+        for (int j = 0; j < size; j++) {
+            if (next != 0) {
+                next = (last + br.se() + 256) % 256;
+            }
+            last = next == 0 ? last : next;
+        }
+    }
+
+    private static byte[] unescapeRbsp(byte[] nal, int from) {
+        byte[] out = new byte[nal.length - from];
+        int n = 0;
+        int zeros = 0;
+        for (int i = from; i < nal.length; i++) {
+            int b = nal[i] & 0xFF;
+            if (zeros >= 2 && b == 0x03) {
+                zeros = 0;
+                continue;
+            }
+            out[n++] = (byte) b;
+            zeros = b == 0 ? zeros + 1 : 0;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private static class BitReader {
+        private final byte[] data;
+        private int bitPos = 0;
+
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        int bits(int count) {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int byteIndex = bitPos >> 3;
+                if (byteIndex >= data.length) throw new IllegalStateException("SPS truncated");
+                int bit = (data[byteIndex] >> (7 - (bitPos & 7))) & 1;
+                value = (value << 1) | bit;
+                bitPos++;
+            }
+            return value;
+        }
+
+        int ue() {
+            int leadingZeros = 0;
+            while (bits(1) == 0) {
+                leadingZeros++;
+                if (leadingZeros > 31) throw new IllegalStateException("Bad exp-Golomb code");
+            }
+            return leadingZeros == 0 ? 0 : (1 << leadingZeros) - 1 + bits(leadingZeros);
+        }
+
+        int se() {
+            int k = ue();
+            return (k & 1) == 1 ? (k + 1) / 2 : -(k / 2);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.reelview.app;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Precompiled, allocation-free URL matcher for the request interception hot path
+ * All rule patterns are compiled into one Aho-Corasick automaton (a full DFA over ASCII),
+ * so a URL is classified in a single case-insensitive pass over its characters with no
+ * lowercasing copy and no repeated contains() scans. A rule matches when every one of its
+ * patterns occurs somewhere in the URL.
+ */
+public class UrlClassifier {
+    private static final int ALPHABET = 128;
+    private static final int MAX_PATTERNS = 64;
+
+    // DFA transitions, flattened as state * ALPHABET + char
+    private final int[] transitions;
+    // Patterns ending at each state, including those reached through failure links, as bit sets
+    private final long[] outputs;
+    private final long[] ruleMasks;
+
+    /**
+     * Collects rules before compiling them
+     */
+    public static class Builder {
+        private final List<String> patterns = new ArrayList<>();
+        private final List<int[]> rules = new ArrayList<>();
+
+        /**
+         * Match URLs containing all of the given substrings (case-insensitive, ASCII)
+         */
+        public Builder matchAll(String... substrings) {
+            int[] rule = new int[substrings.length];
+            for (int i = 0; i < substrings.length; i++) {
+                // ROOT, not the default locale: a Turkish 'I' would become a non-ASCII dotless i
+                String pattern = substrings[i].toLowerCase(Locale.ROOT);
+                int index = patterns.indexOf(pattern);
+                if (index < 0) {
+                    index = patterns.size();
+                    patterns.add(pattern);
+                }
+                rule[i] = index;
+            }
+            rules.add(rule);
+            return this;
+        }
+
+        public Builder match(String substring) {
+            return matchAll(substring);
+        }
+
+        public UrlClassifier build() {
+            if (patterns.size() > MAX_PATTERNS) {
+                throw new IllegalArgumentException("At most " + MAX_PATTERNS + " distinct patterns are supported");
+            }
+            return new UrlClassifier(patterns, rules);
+        }
+    }
+
+    /**
+     * The HLS playlist patterns the WebView client has always used
+     */
+    public static UrlClassifier hlsDefaults() {
+        return new Builder()
+            .match(".m3u8")
+            .match("/hls/")
+            .match("/playlist")
+            .match("/manifest")
+            .match("/pl/")         // Common playlist path
+            .match("/master.")     // Master playlist
+            .matchAll("stream", "m3u")  // Various stream patterns
+            .build();
+    }
+
+    private UrlClassifier(List<String> patterns, List<int[]> rules) {
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Long> terminal = new ArrayList<>();
+        trie.add(newNode());
+        terminal.add(0L);
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p);
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Patterns must be ASCII: " + pattern);
+                }
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newNode());
+                    terminal.add(0L);
+                }
+                state = trie.get(state)[c];
+            }
+            terminal.set(state, terminal.get(state) | (1L << p));
+        }
+
+        // Breadth-first: resolve failure links into direct DFA transitions and merge outputs
+        int stateCount = trie.size();
+        transitions = new int[stateCount * ALPHABET];
+        outputs = new long[stateCount];
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = terminal.get(0);
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = trie.get(0)[c];
+            if (child < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] = terminal.get(state) | outputs[failure[state]];
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = trie.get(state)[c];
+                int fallback = transitions[failure[state] * ALPHABET + c];
+                if (child < 0) {
+                    transitions[state * ALPHABET + c] = fallback;
+                } else {
+                    transitions[state * ALPHABET + c] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+
+        ruleMasks = new long[rules.size()];
+        for (int r = 0; r < rules.size(); r++) {
+            for (int index : rules.get(r)) {
+                ruleMasks[r] |= 1L << index;
+            }
+        }
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    /**
+     * Whether any rule matches the URL
+     */
+    public boolean matches(String url) {
+        if (url == null) return false;
+        int state = 0;
+        long seen = 0;
+        for (int i = 0, n = url.length(); i < n; i++) {
+            char c = url.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            } else if (c >= ALPHABET) {
+                // No pattern contains non-ASCII characters
+                state = 0;
+                continue;
+            }
+            state = transitions[state * ALPHABET + c];
+            long found = outputs[state];
+            if (found != 0 && (seen | found) != seen) {
+                seen |= found;
+                for (long mask : ruleMasks) {
+                    if ((seen & mask) == mask) return true;
+                }
+            }
+        }
+        return false;
+    }
+}
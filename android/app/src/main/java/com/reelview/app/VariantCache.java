@@ -0,0 +1,261 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Size- and age-bounded LRU cache of parsed variant lists, persisted to app storage
+ * Entries are fresh for a short TTL; after that they are still served immediately but should be
+ * revalidated with the stored ETag/Last-Modified. Entries past the maximum age are dropped, since
+ * tokenized playlist URLs stop working anyway. Reads and writes of the file happen on a
+ * background thread; until the file is loaded every lookup is a miss.
+ */
+public class VariantCache {
+    private static final String TAG = "VariantCache";
+    private static final int FORMAT_VERSION = 1;
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000L;
+    public static final long DEFAULT_MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    /**
+     * Cached variant list with its HTTP validators
+     */
+    public static class Entry {
+        public final String url;
+        public final JSONArray variants;
+        public final String etag;
+        public final String lastModified;
+        volatile long validatedAt;
+
+        Entry(String url, JSONArray variants, String etag, String lastModified, long validatedAt) {
+            this.url = url;
+            this.variants = variants;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAt = validatedAt;
+        }
+
+        public boolean hasValidator() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    private final File file;
+    private final int maxEntries;
+    private final long ttlMs;
+    private final long maxAgeMs;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "VariantCacheWriter");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean savePending = new AtomicBoolean(false);
+    // Guarded by this; set once the file has been merged in
+    private boolean loaded = false;
+    // Cleared before the file was loaded: its entries must not come back
+    private boolean clearedBeforeLoad = false;
+
+    public VariantCache(File file) {
+        this(file, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS, DEFAULT_MAX_AGE_MS);
+    }
+
+    public VariantCache(File file, int maxEntries, long ttlMs, long maxAgeMs) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMs = ttlMs;
+        this.maxAgeMs = Math.max(ttlMs, maxAgeMs);
+    }
+
+    /**
+     * Read the file on the writer thread; call once at startup
+     */
+    public void loadAsync() {
+        if (file == null) return;
+        writer.execute(this::load);
+    }
+
+    /**
+     * Cached entry for the URL, fresh or stale, or null if absent, expired or not loaded yet
+     */
+    public synchronized Entry get(String url) {
+        if (!loaded && file != null) return null;
+        Entry entry = entries.get(url);
+        if (entry != null && System.currentTimeMillis() - entry.validatedAt > maxAgeMs) {
+            entries.remove(url);
+            scheduleSave();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Whether an entry is within its TTL and needs no revalidation
+     */
+    public boolean isFresh(Entry entry) {
+        return entry != null && System.currentTimeMillis() - entry.validatedAt <= ttlMs;
+    }
+
+    public synchronized void put(String url, JSONArray variants, String etag, String lastModified) {
+        entries.put(url, new Entry(url, variants, etag, lastModified, System.currentTimeMillis()));
+        trim();
+        scheduleSave();
+    }
+
+    /**
+     * Record a 304 Not Modified: the cached variants are valid for another TTL
+     */
+    public synchronized void markValidated(String url) {
+        Entry entry = entries.get(url);
+        if (entry != null) {
+            entry.validatedAt = System.currentTimeMillis();
+            scheduleSave();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        if (!loaded) {
+            clearedBeforeLoad = true;
+        }
+        scheduleSave();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void trim() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Merge the file into memory, on the writer thread only
+     * Entries put before the load finished are newer, so they win and stay most recently used.
+     */
+    private void load() {
+        synchronized (this) {
+            if (loaded) return;
+        }
+        List<Entry> stored = new ArrayList<>();
+        if (file != null && file.exists()) {
+            try {
+                JSONObject root = new JSONObject(readFile(file));
+                JSONArray list = root.optInt("version") == FORMAT_VERSION ? root.optJSONArray("entries") : null;
+                long now = System.currentTimeMillis();
+                for (int i = 0; list != null && i < list.length(); i++) {
+                    JSONObject item = list.optJSONObject(i);
+                    if (item == null) continue;
+                    long validatedAt = item.optLong("validatedAt");
+                    JSONArray variants = item.optJSONArray("variants");
+                    if (variants == null || now - validatedAt > maxAgeMs) continue;
+                    String url = item.optString("url");
+                    stored.add(new Entry(url, variants,
+                        item.isNull("etag") ? null : item.optString("etag", null),
+                        item.isNull("lastModified") ? null : item.optString("lastModified", null),
+                        validatedAt));
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Discarding unreadable variant cache: " + e.getMessage());
+                stored.clear();
+            }
+        }
+        synchronized (this) {
+            if (!clearedBeforeLoad) {
+                List<Entry> recent = new ArrayList<>(entries.values());
+                entries.clear();
+                for (Entry entry : stored) {
+                    entries.put(entry.url, entry);
+                }
+                for (Entry entry : recent) {
+                    entries.put(entry.url, entry);
+                }
+                trim();
+            }
+            loaded = true;
+            Log.d(TAG, "Loaded " + entries.size() + " cached variant lists");
+        }
+    }
+
+    /**
+     * Persist on the writer thread; several changes in a row produce a single write
+     */
+    private void scheduleSave() {
+        if (file == null || !savePending.compareAndSet(false, true)) return;
+        writer.execute(() -> {
+            savePending.set(false);
+            // Never overwrite the file before its entries have been merged in
+            load();
+            save();
+        });
+    }
+
+    private void save() {
+        List<Entry> snapshot;
+        synchronized (this) {
+            // LRU order, eldest first, so reloading restores the same eviction order
+            snapshot = new ArrayList<>(entries.values());
+        }
+        try {
+            JSONArray list = new JSONArray();
+            for (Entry entry : snapshot) {
+                JSONObject item = new JSONObject();
+                item.put("url", entry.url);
+                item.put("variants", entry.variants);
+                if (entry.etag != null) item.put("etag", entry.etag);
+                if (entry.lastModified != null) item.put("lastModified", entry.lastModified);
+                item.put("validatedAt", entry.validatedAt);
+                list.put(item);
+            }
+            JSONObject root = new JSONObject();
+            root.put("version", FORMAT_VERSION);
+            root.put("entries", list);
+
+            // Write a temp file and rename so a crash never leaves a truncated cache
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(root.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("rename failed");
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not persist variant cache: " + e.getMessage());
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                content.write(buffer, 0, n);
+            }
+            return content.toString("UTF-8");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.reelview.app;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-flight variant lookups on a small shared executor
+ * Concurrent requests for the same URL (capture pre-caching, the UI, pending captures) join the
+ * one fetch already in flight instead of issuing their own, and all of them get its result.
+ */
+public class VariantLoader {
+    private static final String TAG = "VariantLoader";
+    private static final int THREADS = 2;
+
+    /**
+     * Fetches and parses the variants of one playlist URL
+     */
+    public interface Fetcher {
+        JSONArray fetch(String url) throws Exception;
+    }
+
+    /**
+     * Receives the shared result; exactly one of variants or error is non-null
+     */
+    public interface Callback {
+        void onResult(JSONArray variants, Exception error);
+    }
+
+    private final Fetcher fetcher;
+    private final ExecutorService executor;
+    private final Map<String, Flight> inFlight = new HashMap<>();
+
+    private class Flight implements Runnable {
+        final String url;
+        final List<Callback> callbacks = new ArrayList<>();
+
+        Flight(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public void run() {
+            JSONArray variants = null;
+            Exception error = null;
+            try {
+                variants = fetcher.fetch(url);
+            } catch (Exception e) {
+                error = e;
+            }
+
+            List<Callback> waiting;
+            synchronized (inFlight) {
+                inFlight.remove(url);
+                waiting = new ArrayList<>(callbacks);
+            }
+            for (Callback callback : waiting) {
+                try {
+                    callback.onResult(variants, error);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Variant callback failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public VariantLoader(Fetcher fetcher) {
+        this.fetcher = fetcher;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(THREADS, r -> {
+            Thread t = new Thread(r, "VariantLoader-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Look up a URL's variants, joining a fetch already in flight for it
+     * @param callback invoked on a loader thread once the fetch completes, may be null
+     */
+    public void load(String url, Callback callback) {
+        Flight flight;
+        boolean start = false;
+        synchronized (inFlight) {
+            flight = inFlight.get(url);
+            if (flight == null) {
+                flight = new Flight(url);
+                inFlight.put(url, flight);
+                start = true;
+            }
+            if (callback != null) {
+                flight.callbacks.add(callback);
+            }
+        }
+        if (start) {
+            executor.execute(flight);
+        } else {
+            Log.d(TAG, "Joined in-flight variant lookup");
+        }
+    }
+}
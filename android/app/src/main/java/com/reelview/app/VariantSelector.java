@@ -0,0 +1,139 @@
+package com.reelview.app;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Picks the rendition to download from a master playlist
+ *
+ * Quality strings understood:
+ *   "1080p", "720", ...      exact resolution, else the closest one below, else the smallest above
+ *   "max:3000000"             highest bandwidth not above the cap (bits per second)
+ *   "auto" / "throughput"    best rendition the measured throughput sustains, highest if unmeasured
+ *   "best" / "highest"       highest bandwidth
+ *   "lowest"                 lowest bandwidth
+ */
+public class VariantSelector {
+    // Leave headroom so a sustained rendition keeps downloading faster than real time
+    private static final double THROUGHPUT_SAFETY = 0.8;
+
+    public enum Policy { EXACT_RESOLUTION, BANDWIDTH_CAP, SUSTAINABLE, HIGHEST, LOWEST }
+
+    private final Policy policy;
+    private final int targetHeight;
+    private final long bandwidthCap;
+
+    private VariantSelector(Policy policy, int targetHeight, long bandwidthCap) {
+        this.policy = policy;
+        this.targetHeight = targetHeight;
+        this.bandwidthCap = bandwidthCap;
+    }
+
+    public static VariantSelector exactResolution(int height) {
+        return new VariantSelector(Policy.EXACT_RESOLUTION, height, 0);
+    }
+
+    public static VariantSelector bandwidthCap(long maxBitsPerSecond) {
+        return new VariantSelector(Policy.BANDWIDTH_CAP, 0, maxBitsPerSecond);
+    }
+
+    public static VariantSelector sustainable() {
+        return new VariantSelector(Policy.SUSTAINABLE, 0, 0);
+    }
+
+    /**
+     * Build a selector from the quality string passed to startDownload
+     */
+    public static VariantSelector fromQuality(String quality) {
+        if (quality == null) return sustainable();
+        String q = quality.trim().toLowerCase(Locale.US);
+        if (q.isEmpty() || q.equals("auto") || q.equals("throughput") || q.equals("default quality")) {
+            return sustainable();
+        }
+        if (q.equals("best") || q.equals("highest")) return new VariantSelector(Policy.HIGHEST, 0, 0);
+        if (q.equals("lowest")) return new VariantSelector(Policy.LOWEST, 0, 0);
+        if (q.startsWith("max:")) {
+            try {
+                return bandwidthCap(Long.parseLong(q.substring(4).trim()));
+            } catch (NumberFormatException ignored) {
+                return sustainable();
+            }
+        }
+        String digits = q.endsWith("p") ? q.substring(0, q.length() - 1) : q;
+        try {
+            return exactResolution(Integer.parseInt(digits.trim()));
+        } catch (NumberFormatException ignored) {
+            return sustainable();
+        }
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @param measuredThroughputBps recent network throughput in bits per second, or 0 if unknown
+     * @return the chosen variant, or null if the list is empty
+     */
+    public HlsVariant select(List<HlsVariant> variants, double measuredThroughputBps) {
+        if (variants == null || variants.isEmpty()) return null;
+        switch (policy) {
+            case EXACT_RESOLUTION:
+                return selectByHeight(variants);
+            case BANDWIDTH_CAP:
+                return selectUnderBandwidth(variants, bandwidthCap);
+            case SUSTAINABLE:
+                if (measuredThroughputBps <= 0) return highest(variants);
+                return selectUnderBandwidth(variants, (long) (measuredThroughputBps * THROUGHPUT_SAFETY));
+            case LOWEST:
+                return lowest(variants);
+            case HIGHEST:
+            default:
+                return highest(variants);
+        }
+    }
+
+    private HlsVariant selectByHeight(List<HlsVariant> variants) {
+        HlsVariant exact = null;
+        HlsVariant below = null;
+        HlsVariant above = null;
+        for (HlsVariant v : variants) {
+            int h = v.getEffectiveHeight();
+            if (h == targetHeight) {
+                if (exact == null || v.bandwidth > exact.bandwidth) exact = v;
+            } else if (h < targetHeight) {
+                if (below == null || h > below.getEffectiveHeight()
+                        || (h == below.getEffectiveHeight() && v.bandwidth > below.bandwidth)) below = v;
+            } else {
+                if (above == null || h < above.getEffectiveHeight()
+                        || (h == above.getEffectiveHeight() && v.bandwidth < above.bandwidth)) above = v;
+            }
+        }
+        if (exact != null) return exact;
+        return below != null ? below : above;
+    }
+
+    private static HlsVariant selectUnderBandwidth(List<HlsVariant> variants, long cap) {
+        HlsVariant best = null;
+        for (HlsVariant v : variants) {
+            if (v.bandwidth <= cap && (best == null || v.bandwidth > best.bandwidth)) best = v;
+        }
+        return best != null ? best : lowest(variants);
+    }
+
+    private static HlsVariant highest(List<HlsVariant> variants) {
+        HlsVariant best = variants.get(0);
+        for (HlsVariant v : variants) {
+            if (v.bandwidth > best.bandwidth) best = v;
+        }
+        return best;
+    }
+
+    private static HlsVariant lowest(List<HlsVariant> variants) {
+        HlsVariant best = variants.get(0);
+        for (HlsVariant v : variants) {
+            if (v.bandwidth < best.bandwidth) best = v;
+        }
+        return best;
+    }
+}
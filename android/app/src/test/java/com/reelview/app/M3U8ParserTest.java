@@ -0,0 +1,166 @@
+package com.reelview.app;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class M3U8ParserTest {
+    private static final String BASE = "https://cdn.example.com/show/ep1/index.m3u8?token=abc";
+
+    @Test
+    public void detectsMasterPlaylist() throws IOException {
+        HlsPlaylist playlist = M3U8Parser.parse(
+            "#EXTM3U\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=1280000,RESOLUTION=1280x720,CODECS=\"avc1.4d401f,mp4a.40.2\"\n"
+                + "720/index.m3u8\n"
+                + "#EXT-X-STREAM-INF:BANDWIDTH=640000\n"
+                + "/abs/360.m3u8\n", BASE);
+
+        assertTrue(playlist.isMaster());
+        assertEquals(0, playlist.segments.size());
+        assertEquals(2, playlist.variants.size());
+        HlsVariant first = playlist.variants.get(0);
+        assertEquals("https://cdn.example.com/show/ep1/720/index.m3u8", first.url);
+        assertEquals(1280000, first.bandwidth);
+        assertEquals(720, first.height);
+        assertEquals("avc1.4d401f,mp4a.40.2", first.codecs);
+        assertEquals("https://cdn.example.com/abs/360.m3u8", playlist.variants.get(1).url);
+    }
+
+    @Test
+    public void detectsMediaPlaylist() throws IOException {
+        HlsPlaylist playlist = M3U8Parser.parse(
+            "#EXTM3U\r\n"
+                + "#EXT-X-TARGETDURATION:6\r\n"
+                + "#EXT-X-MEDIA-SEQUENCE:100\r\n"
+                + "#EXT-X-PLAYLIST-TYPE:VOD\r\n"
+                + "#EXTINF:5.005,\r\n"
+                + "seg100.ts\r\n"
+                + "#EXT-X-DISCONTINUITY\r\n"
+                + "#EXTINF:4.5,\r\n"
+                + "https://other.example.com/seg101.ts\r\n"
+                + "#EXT-X-ENDLIST\r\n", BASE);
+
+        assertFalse(playlist.isMaster());
+        assertEquals(2, playlist.segments.size());
+        assertEquals(100, playlist.mediaSequence);
+        assertEquals(6.0, playlist.targetDuration, 0);
+        assertEquals("VOD", playlist.playlistType);
+        assertTrue(playlist.endList);
+        assertEquals(9.505, playlist.getTotalDuration(), 1e-9);
+
+        HlsPlaylist.Segment first = playlist.segments.get(0);
+        assertEquals("https://cdn.example.com/show/ep1/seg100.ts", first.url);
+        assertEquals(100, first.sequence);
+        assertFalse(first.discontinuity);
+        assertFalse(first.hasByteRange());
+
+        HlsPlaylist.Segment second = playlist.segments.get(1);
+        assertEquals("https://other.example.com/seg101.ts", second.url);
+        assertEquals(101, second.sequence);
+        assertTrue(second.discontinuity);
+        assertEquals(first.discontinuitySequence + 1, second.discontinuitySequence);
+    }
+
+    @Test
+    public void byteRangeWithoutOffsetContinuesPreviousRangeOfSameResource() throws IOException {
+        HlsPlaylist playlist = M3U8Parser.parse(
+            "#EXTM3U\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:1000@200\n"
+                + "main.ts\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:500\n"
+                + "main.ts\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:300\n"
+                + "other.ts\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:700\n"
+                + "other.ts\n", BASE);
+
+        assertEquals(4, playlist.segments.size());
+        assertRange(playlist.segments.get(0), 200, 1000);
+        assertRange(playlist.segments.get(1), 1200, 500);
+        // A different resource without an explicit offset starts at its beginning
+        assertRange(playlist.segments.get(2), 0, 300);
+        assertRange(playlist.segments.get(3), 300, 700);
+    }
+
+    @Test
+    public void skippedSegmentsStillAdvanceImplicitByteRangeOffsets() throws IOException {
+        String content = "#EXTM3U\n"
+            + "#EXT-X-MEDIA-SEQUENCE:10\n"
+            + "#EXTINF:4,\n"
+            + "#EXT-X-BYTERANGE:1000@0\n"
+            + "main.ts\n"
+            + "#EXTINF:4,\n"
+            + "#EXT-X-BYTERANGE:1000\n"
+            + "main.ts\n"
+            + "#EXTINF:4,\n"
+            + "#EXT-X-BYTERANGE:1000\n"
+            + "main.ts\n";
+        HlsPlaylist playlist = M3U8Parser.parse(
+            new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), BASE, BASE, 12);
+
+        assertEquals(1, playlist.segments.size());
+        assertEquals(12, playlist.segments.get(0).sequence);
+        assertRange(playlist.segments.get(0), 2000, 1000);
+    }
+
+    @Test
+    public void keyAppliesToFollowingSegmentsUntilReplaced() throws IOException {
+        HlsPlaylist playlist = M3U8Parser.parse(
+            "#EXTM3U\n"
+                + "#EXT-X-KEY:METHOD=AES-128,URI=\"key.bin\",IV=0x0102\n"
+                + "#EXTINF:4,\n"
+                + "a.ts\n"
+                + "#EXT-X-KEY:METHOD=NONE\n"
+                + "#EXTINF:4,\n"
+                + "b.ts\n", BASE);
+
+        HlsPlaylist.Key key = playlist.segments.get(0).key;
+        assertEquals("AES-128", key.method);
+        assertEquals("https://cdn.example.com/show/ep1/key.bin", key.uri);
+        byte[] iv = new byte[16];
+        iv[14] = 1;
+        iv[15] = 2;
+        assertArrayEquals(iv, key.iv);
+        assertNull(playlist.segments.get(1).key);
+    }
+
+    @Test
+    public void rejectsHtml() {
+        try {
+            M3U8Parser.parse("<!DOCTYPE html><html></html>", BASE);
+            fail("HTML must not parse as a playlist");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void rejectsContentWithoutHeaderOrEntries() {
+        try {
+            M3U8Parser.parse("just some text\n", BASE);
+            fail("Content without #EXTM3U and entries must not parse");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private static void assertRange(HlsPlaylist.Segment segment, long offset, long length) {
+        assertTrue(segment.hasByteRange());
+        assertEquals(offset, segment.byteRangeOffset);
+        assertEquals(length, segment.byteRangeLength);
+    }
+}
@@ -0,0 +1,60 @@
+package com.reelview.app;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal ISO BMFF reader for checking the boxes Mp4Writer produces
+ */
+final class Mp4Boxes {
+    private Mp4Boxes() {}
+
+    /**
+     * Payload of the first box at the path, e.g. "moov", "trak", "mdia", "mdhd", or null if absent
+     * The returned buffer holds the payload only, after the size and type header.
+     */
+    static ByteBuffer find(byte[] data, String... path) {
+        return find(ByteBuffer.wrap(data), 0, path);
+    }
+
+    /**
+     * Payload of the {@code index}-th box matching the last path element, e.g. the second "moov", "trak"
+     */
+    static ByteBuffer findNth(byte[] data, int index, String... path) {
+        return find(ByteBuffer.wrap(data), index, path);
+    }
+
+    private static ByteBuffer find(ByteBuffer scope, int index, String[] path) {
+        ByteBuffer current = scope;
+        for (int depth = 0; depth < path.length; depth++) {
+            current = child(current, path[depth], depth == path.length - 1 ? index : 0);
+            if (current == null) return null;
+        }
+        return current;
+    }
+
+    private static ByteBuffer child(ByteBuffer parent, String type, int index) {
+        ByteBuffer in = parent.duplicate();
+        while (in.remaining() >= 8) {
+            int start = in.position();
+            long size = in.getInt() & 0xFFFFFFFFL;
+            byte[] fourcc = new byte[4];
+            in.get(fourcc);
+            int header = 8;
+            if (size == 1) {
+                size = in.getLong();
+                header = 16;
+            } else if (size == 0) {
+                size = in.limit() - start;
+            }
+            if (new String(fourcc, StandardCharsets.US_ASCII).equals(type) && index-- == 0) {
+                ByteBuffer payload = in.duplicate();
+                payload.position(start + header);
+                payload.limit((int) (start + size));
+                return payload.slice();
+            }
+            in.position((int) (start + size));
+        }
+        return null;
+    }
+}
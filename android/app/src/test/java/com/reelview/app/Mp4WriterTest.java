@@ -0,0 +1,168 @@
+package com.reelview.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class Mp4WriterTest {
+    private static final byte[] AUDIO_SPECIFIC_CONFIG = {0x11, (byte) 0x90};
+    // Beyond 0xFFFFFFFF in both the 1 kHz track timescale and the 1 kHz movie timescale
+    private static final int HUGE_DELTA = 2000000000;
+    private static final long HUGE_DURATION = 3L * HUGE_DELTA;
+
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        output = File.createTempFile("mp4writer", ".mp4");
+    }
+
+    @After
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Test
+    public void shortDurationsUseVersion0Boxes() throws IOException {
+        try (Mp4Writer writer = new Mp4Writer(output)) {
+            Mp4Writer.Track track = audioTrack(writer);
+            for (int i = 0; i < 10; i++) {
+                writer.writeSample(track, new byte[8], 0, 8, i * 1024L, 0, true);
+            }
+            writer.finish();
+        }
+        byte[] mp4 = Files.readAllBytes(output.toPath());
+
+        ByteBuffer mvhd = Mp4Boxes.find(mp4, "moov", "mvhd");
+        assertEquals(0, mvhd.get(0));
+        assertEquals(1000, mvhd.getInt(12));
+        // 10 samples of 1024 at 48 kHz
+        assertEquals(213, mvhd.getInt(16));
+
+        ByteBuffer mdhd = Mp4Boxes.find(mp4, "moov", "trak", "mdia", "mdhd");
+        assertEquals(0, mdhd.get(0));
+        assertEquals(48000, mdhd.getInt(12));
+        assertEquals(10 * 1024, mdhd.getInt(16));
+
+        ByteBuffer tkhd = Mp4Boxes.find(mp4, "moov", "trak", "tkhd");
+        assertEquals(0, tkhd.get(0));
+        assertEquals(1, tkhd.getInt(12));
+        assertEquals(213, tkhd.getInt(20));
+
+        ByteBuffer elst = Mp4Boxes.find(mp4, "moov", "trak", "edts", "elst");
+        assertEquals(0, elst.get(0));
+        assertEquals(1, elst.getInt(4));
+        assertEquals(213, elst.getInt(8));
+        assertEquals(0, elst.getInt(12));
+    }
+
+    @Test
+    public void durationsAbove32BitsUseVersion1Boxes() throws IOException {
+        try (Mp4Writer writer = new Mp4Writer(output)) {
+            Mp4Writer.Track track = writer.addAudioTrack(1000);
+            track.setAudioConfig(AUDIO_SPECIFIC_CONFIG, 2, 48000);
+            // The last sample is given the previous delta, so three samples span three deltas
+            for (int i = 0; i < 3; i++) {
+                writer.writeSample(track, new byte[8], 0, 8, (long) i * HUGE_DELTA, 0, true);
+            }
+            writer.finish();
+        }
+        byte[] mp4 = Files.readAllBytes(output.toPath());
+
+        ByteBuffer mvhd = Mp4Boxes.find(mp4, "moov", "mvhd");
+        assertEquals(1, mvhd.get(0));
+        assertEquals(0, mvhd.getLong(4));
+        assertEquals(0, mvhd.getLong(12));
+        assertEquals(1000, mvhd.getInt(20));
+        assertEquals(HUGE_DURATION, mvhd.getLong(24));
+        // rate follows the 64-bit duration
+        assertEquals(0x00010000, mvhd.getInt(32));
+
+        ByteBuffer tkhd = Mp4Boxes.find(mp4, "moov", "trak", "tkhd");
+        assertEquals(1, tkhd.get(0));
+        assertEquals(3, tkhd.getInt(0) & 0xFFFFFF);
+        assertEquals(1, tkhd.getInt(20));
+        assertEquals(HUGE_DURATION, tkhd.getLong(28));
+
+        ByteBuffer elst = Mp4Boxes.find(mp4, "moov", "trak", "edts", "elst");
+        assertEquals(1, elst.get(0));
+        assertEquals(1, elst.getInt(4));
+        assertEquals(HUGE_DURATION, elst.getLong(8));
+        assertEquals(0, elst.getLong(16));
+        assertEquals(0x00010000, elst.getInt(24));
+        assertEquals(28, elst.limit());
+
+        ByteBuffer mdhd = Mp4Boxes.find(mp4, "moov", "trak", "mdia", "mdhd");
+        assertEquals(1, mdhd.get(0));
+        assertEquals(1000, mdhd.getInt(20));
+        assertEquals(HUGE_DURATION, mdhd.getLong(24));
+        assertEquals(0x55C4, mdhd.getShort(32));
+    }
+
+    @Test
+    public void chunkOffsetsPointAtSampleData() throws IOException {
+        byte[] first = {1, 2, 3, 4};
+        byte[] second = {5, 6, 7};
+        byte[] third = {8, 9};
+        try (Mp4Writer writer = new Mp4Writer(output)) {
+            Mp4Writer.Track track = audioTrack(writer);
+            writer.writeSample(track, first, 0, first.length, 0, 0, true);
+            // Half a second after the chunk started, so this sample closes it
+            writer.writeSample(track, second, 0, second.length, 24000, 0, true);
+            writer.writeSample(track, third, 0, third.length, 25024, 0, true);
+            writer.finish();
+        }
+        byte[] mp4 = Files.readAllBytes(output.toPath());
+
+        assertNull(Mp4Boxes.find(mp4, "moov", "trak", "mdia", "minf", "stbl", "stco"));
+        ByteBuffer co64 = Mp4Boxes.find(mp4, "moov", "trak", "mdia", "minf", "stbl", "co64");
+        assertNotNull(co64);
+        assertEquals(2, co64.getInt(4));
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6, 7}, slice(mp4, co64.getLong(8), 7));
+        assertArrayEquals(third, slice(mp4, co64.getLong(16), third.length));
+    }
+
+    @Test
+    public void chunkOffsetsAbove4GbKeepAll64Bits() throws IOException {
+        long offset = 0x123456789L;
+        byte[] moov;
+        try (Mp4Writer writer = new Mp4Writer(output)) {
+            Mp4Writer.Track track = audioTrack(writer);
+            track.firstDts = 0;
+            track.sampleSizes.add(8);
+            track.addDelta(1024);
+            track.addChunk(offset, 1);
+            ByteBuffer box = writer.buildMoov(Collections.singletonList(track)).toBuffer();
+            moov = new byte[box.remaining()];
+            box.get(moov);
+        }
+
+        ByteBuffer co64 = Mp4Boxes.find(moov, "moov", "trak", "mdia", "minf", "stbl", "co64");
+        assertEquals(0, co64.getInt(0));
+        assertEquals(1, co64.getInt(4));
+        assertEquals(offset, co64.getLong(8));
+    }
+
+    private static Mp4Writer.Track audioTrack(Mp4Writer writer) {
+        Mp4Writer.Track track = writer.addAudioTrack(48000);
+        track.setAudioConfig(AUDIO_SPECIFIC_CONFIG, 2, 48000);
+        return track;
+    }
+
+    private static byte[] slice(byte[] data, long offset, int length) {
+        byte[] out = new byte[length];
+        System.arraycopy(data, (int) offset, out, 0, length);
+        return out;
+    }
+}
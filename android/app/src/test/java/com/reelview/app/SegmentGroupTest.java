@@ -0,0 +1,143 @@
+package com.reelview.app;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentGroupTest {
+    private static final long NO_LIMIT = Long.MAX_VALUE;
+
+    @Test
+    public void mergesContiguousRangesOfOneResource() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        segments.add(range("main.ts", 0, 100, 0));
+        segments.add(range("main.ts", 100, 200, 1));
+        segments.add(range("main.ts", 300, 50, 2));
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 0, NO_LIMIT);
+
+        assertEquals(1, groups.size());
+        assertGroup(groups.get(0), "main.ts", 0, 3, 0, 350);
+    }
+
+    @Test
+    public void gapOrOtherResourceStartsNewGroup() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        segments.add(range("main.ts", 0, 100, 0));
+        // Gap of 10 bytes
+        segments.add(range("main.ts", 110, 100, 1));
+        segments.add(range("other.ts", 210, 100, 2));
+        segments.add(range("other.ts", 310, 100, 3));
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 0, NO_LIMIT);
+
+        assertEquals(3, groups.size());
+        assertGroup(groups.get(0), "main.ts", 0, 1, 0, 100);
+        assertGroup(groups.get(1), "main.ts", 1, 1, 110, 100);
+        assertGroup(groups.get(2), "other.ts", 2, 2, 210, 200);
+    }
+
+    @Test
+    public void wholeResourceSegmentsAreGroupsOfTheirOwn() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        segments.add(whole("a.ts", 0));
+        segments.add(range("main.ts", 0, 100, 1));
+        segments.add(whole("b.ts", 2));
+        segments.add(range("main.ts", 100, 100, 3));
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 0, NO_LIMIT);
+
+        assertEquals(4, groups.size());
+        assertFalse(groups.get(0).isByteRange());
+        assertEquals(-1, groups.get(0).offset);
+        assertEquals(1, groups.get(0).count);
+        assertGroup(groups.get(1), "main.ts", 1, 1, 0, 100);
+        assertFalse(groups.get(2).isByteRange());
+        // The whole-resource segment in between breaks the run even though the ranges touch
+        assertGroup(groups.get(3), "main.ts", 3, 1, 100, 100);
+    }
+
+    @Test
+    public void groupsStopAtMaximumSize() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            segments.add(range("main.ts", i * 100L, 100, i));
+        }
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 0, 250);
+
+        assertEquals(3, groups.size());
+        assertGroup(groups.get(0), "main.ts", 0, 2, 0, 200);
+        assertGroup(groups.get(1), "main.ts", 2, 2, 200, 200);
+        assertGroup(groups.get(2), "main.ts", 4, 1, 400, 100);
+    }
+
+    @Test
+    public void segmentLargerThanMaximumStillFormsAGroup() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        segments.add(range("main.ts", 0, 1000, 0));
+        segments.add(range("main.ts", 1000, 10, 1));
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 0, 100);
+
+        assertEquals(2, groups.size());
+        assertGroup(groups.get(0), "main.ts", 0, 1, 0, 1000);
+        assertGroup(groups.get(1), "main.ts", 1, 1, 1000, 10);
+    }
+
+    @Test
+    public void planStartsAtStartIndex() {
+        List<HlsPlaylist.Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            segments.add(range("main.ts", i * 100L, 100, i));
+        }
+
+        List<SegmentGroup> groups = SegmentGroup.plan(segments, 2, NO_LIMIT);
+
+        assertEquals(1, groups.size());
+        assertGroup(groups.get(0), "main.ts", 2, 2, 200, 200);
+    }
+
+    @Test
+    public void groupsParsedPlaylistWithImplicitOffsets() throws Exception {
+        HlsPlaylist playlist = M3U8Parser.parse(
+            "#EXTM3U\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:1000@0\n"
+                + "main.ts\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n"
+                + "#EXTINF:4,\n"
+                + "#EXT-X-BYTERANGE:1000\n"
+                + "main.ts\n", "https://cdn.example.com/v/index.m3u8");
+
+        List<SegmentGroup> groups = SegmentGroup.plan(playlist.segments, 0, SegmentGroup.DEFAULT_MAX_GROUP_BYTES);
+
+        assertEquals(1, groups.size());
+        assertGroup(groups.get(0), "https://cdn.example.com/v/main.ts", 0, 3, 0, 3000);
+    }
+
+    private static HlsPlaylist.Segment range(String url, long offset, long length, long sequence) {
+        return new HlsPlaylist.Segment(url, 4, sequence, 0, false, offset, length, null);
+    }
+
+    private static HlsPlaylist.Segment whole(String url, long sequence) {
+        return new HlsPlaylist.Segment(url, 4, sequence, 0, false, -1, -1, null);
+    }
+
+    private static void assertGroup(SegmentGroup group, String url, int firstIndex, int count, long offset,
+                                    long length) {
+        assertTrue(group.isByteRange());
+        assertEquals(url, group.url);
+        assertEquals(firstIndex, group.firstIndex);
+        assertEquals(count, group.count);
+        assertEquals(offset, group.offset);
+        assertEquals(length, group.length);
+    }
+}
@@ -0,0 +1,290 @@
+package com.reelview.app;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TsRemuxerTest {
+    private static final int VIDEO_PID = 0x100;
+    private static final int AUDIO_PID = 0x101;
+    private static final int PMT_PID = 0x1000;
+    private static final long PTS_WRAP = 1L << 33;
+    private static final int FRAME_DURATION = 3600; // 25 fps at 90 kHz
+    private static final int COMPOSITION_OFFSET = 7200;
+    private static final byte[] SPS = hex("6764 0028 acd9 4078 0227 e5c0 4400 0003 0004 0000 0300 f03c 60c6 58");
+    private static final byte[] PPS = hex("68eb e3cb 22c0");
+
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        output = File.createTempFile("tsremuxer", ".mp4");
+    }
+
+    @After
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Test
+    public void remuxesAcrossTimestampWrap() throws IOException {
+        int frames = 100;
+        // Two seconds before the 33-bit timestamps wrap
+        long start = PTS_WRAP - 2 * 90000;
+        TsBuilder ts = new TsBuilder(0x1B, 0x0F);
+        int audioFrames = 0;
+        Random random = new Random(1);
+        for (int f = 0; f < frames; f++) {
+            long dts = (start + (long) f * FRAME_DURATION) % PTS_WRAP;
+            long pts = (dts + COMPOSITION_OFFSET) % PTS_WRAP;
+            ts.pes(VIDEO_PID, 0xE0, pts, dts, accessUnit(f % 50 == 0, random));
+            // Two 48 kHz AAC frames per PES, keeping audio level with video
+            while (audioFrames * 1024L * 90000 / 48000 <= (f + 1) * (long) FRAME_DURATION) {
+                long audioPts = (start + audioFrames * 1024L * 90000 / 48000) % PTS_WRAP;
+                ts.pes(AUDIO_PID, 0xC0, audioPts, audioPts, adts(2, random));
+                audioFrames += 2;
+            }
+        }
+
+        byte[] mp4 = remux(ts.toByteArray(), random);
+
+        ByteBuffer video = Mp4Boxes.findNth(mp4, 0, "moov", "trak");
+        ByteBuffer videoMdhd = box(video, "mdia", "mdhd");
+        assertEquals(0, videoMdhd.get(0));
+        assertEquals(90000, videoMdhd.getInt(12));
+        assertEquals((long) frames * FRAME_DURATION, videoMdhd.getInt(16));
+        ByteBuffer tkhd = box(video, "tkhd");
+        assertEquals(1920, tkhd.getInt(76) >>> 16);
+        assertEquals(1080, tkhd.getInt(80) >>> 16);
+        assertEquals(frames, box(video, "mdia", "minf", "stbl", "stsz").getInt(8));
+        ByteBuffer stss = box(video, "mdia", "minf", "stbl", "stss");
+        assertEquals(2, stss.getInt(4));
+        assertEquals(1, stss.getInt(8));
+        assertEquals(51, stss.getInt(12));
+        // Video presents 80 ms after audio: an empty edit, then one skipping the first composition offset
+        ByteBuffer elst = box(video, "edts", "elst");
+        assertEquals(2, elst.getInt(4));
+        assertEquals(80, elst.getInt(8));
+        assertEquals(-1, elst.getInt(12));
+        assertEquals(COMPOSITION_OFFSET, elst.getInt(24));
+
+        ByteBuffer audio = Mp4Boxes.findNth(mp4, 1, "moov", "trak");
+        ByteBuffer audioMdhd = box(audio, "mdia", "mdhd");
+        assertEquals(48000, audioMdhd.getInt(12));
+        assertEquals(audioFrames * 1024L, audioMdhd.getInt(16));
+        assertEquals(audioFrames, box(audio, "mdia", "minf", "stbl", "stsz").getInt(8));
+    }
+
+    @Test
+    public void dropsFramesBeforeFirstKeyframe() throws IOException {
+        TsBuilder ts = new TsBuilder(0x1B);
+        Random random = new Random(2);
+        for (int f = 0; f < 10; f++) {
+            long dts = 90000 + (long) f * FRAME_DURATION;
+            ts.pes(VIDEO_PID, 0xE0, dts, dts, accessUnit(f == 3, random));
+        }
+
+        byte[] mp4 = remux(ts.toByteArray(), random);
+
+        ByteBuffer stbl = Mp4Boxes.find(mp4, "moov", "trak", "mdia", "minf", "stbl");
+        assertEquals(7, box(stbl, "stsz").getInt(8));
+        assertEquals(1, box(stbl, "stss").getInt(4));
+        assertEquals(1, box(stbl, "stss").getInt(8));
+    }
+
+    @Test
+    public void reportsUnsupportedTracks() throws IOException {
+        TsBuilder ts = new TsBuilder(0x24, 0x0F);
+        try (TsRemuxer remuxer = new TsRemuxer(output)) {
+            byte[] data = ts.toByteArray();
+            remuxer.feed(data, 0, data.length);
+            assertTrue(remuxer.isSupported());
+            assertTrue(remuxer.hasUnsupportedTracks());
+        }
+
+        TsBuilder hevcOnly = new TsBuilder(0x24);
+        try (TsRemuxer remuxer = new TsRemuxer(output)) {
+            byte[] data = hevcOnly.toByteArray();
+            remuxer.feed(data, 0, data.length);
+            assertFalse(remuxer.isSupported());
+        }
+    }
+
+    /**
+     * Remux a transport stream fed in uneven chunks and return the MP4 bytes
+     */
+    private byte[] remux(byte[] transportStream, Random random) throws IOException {
+        try (TsRemuxer remuxer = new TsRemuxer(output)) {
+            int pos = 0;
+            while (pos < transportStream.length) {
+                int n = Math.min(1 + random.nextInt(5000), transportStream.length - pos);
+                remuxer.feed(transportStream, pos, n);
+                pos += n;
+            }
+            assertTrue(remuxer.isSupported());
+            remuxer.finish();
+        }
+        return Files.readAllBytes(output.toPath());
+    }
+
+    private static ByteBuffer box(ByteBuffer parent, String... path) {
+        byte[] data = new byte[parent.remaining()];
+        parent.duplicate().get(data);
+        return Mp4Boxes.find(data, path);
+    }
+
+    private static byte[] accessUnit(boolean keyframe, Random random) throws IOException {
+        ByteArrayOutputStream au = new ByteArrayOutputStream();
+        au.write(hex("00000001 09f0"));
+        if (keyframe) {
+            au.write(hex("00000001"));
+            au.write(SPS);
+            au.write(hex("00000001"));
+            au.write(PPS);
+        }
+        byte[] slice = new byte[200 + random.nextInt(800)];
+        random.nextBytes(slice);
+        for (int i = 1; i < slice.length; i++) {
+            if (slice[i] == 0) slice[i] = 1;
+        }
+        slice[0] = (byte) (keyframe ? 0x65 : 0x41);
+        au.write(hex("000001"));
+        au.write(slice);
+        return au.toByteArray();
+    }
+
+    /**
+     * ADTS frames of AAC-LC, 48 kHz, stereo
+     */
+    private static byte[] adts(int count, Random random) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            int length = 7 + 100;
+            out.write(new byte[] {
+                (byte) 0xFF, (byte) 0xF1, (byte) ((1 << 6) | (3 << 2)), (byte) ((2 << 6) | ((length >> 11) & 3)),
+                (byte) (length >> 3), (byte) (((length & 7) << 5) | 0x1F), (byte) 0xFC
+            });
+            byte[] body = new byte[100];
+            random.nextBytes(body);
+            out.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] hex(String s) {
+        s = s.replace(" ", "");
+        byte[] bytes = new byte[s.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+
+    /**
+     * Transport stream with a PAT, a PMT listing one elementary stream per type, and PES packets
+     */
+    private static class TsBuilder {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final int[] continuity = new int[0x2000];
+
+        TsBuilder(int... streamTypes) {
+            section(0, hex("0000 b00d 0001 c100 0000 01f0 00"));
+            ByteArrayOutputStream pmt = new ByteArrayOutputStream();
+            int sectionLength = 13 + 5 * streamTypes.length;
+            pmt.write(0);
+            pmt.write(0x02);
+            pmt.write(0xB0 | (sectionLength >> 8));
+            pmt.write(sectionLength);
+            byte[] header = hex("0001 c100 00e1 00f0 00");
+            pmt.write(header, 0, header.length);
+            for (int i = 0; i < streamTypes.length; i++) {
+                int pid = VIDEO_PID + i;
+                pmt.write(streamTypes[i]);
+                pmt.write(0xE0 | (pid >> 8));
+                pmt.write(pid);
+                pmt.write(0xF0);
+                pmt.write(0);
+            }
+            section(PMT_PID, pmt.toByteArray());
+        }
+
+        private void section(int pid, byte[] table) {
+            // CRC is not checked by the demuxer
+            byte[] withCrc = new byte[table.length + 4];
+            System.arraycopy(table, 0, withCrc, 0, table.length);
+            packets(pid, withCrc);
+        }
+
+        void pes(int pid, int streamId, long pts, long dts, byte[] data) {
+            ByteArrayOutputStream pes = new ByteArrayOutputStream();
+            boolean both = pts != dts;
+            pes.write(0);
+            pes.write(0);
+            pes.write(1);
+            pes.write(streamId);
+            pes.write(0);
+            pes.write(0);
+            pes.write(0x80);
+            pes.write(both ? 0xC0 : 0x80);
+            pes.write(both ? 10 : 5);
+            timestamp(pes, both ? 3 : 2, pts);
+            if (both) timestamp(pes, 1, dts);
+            pes.write(data, 0, data.length);
+            packets(pid, pes.toByteArray());
+        }
+
+        private static void timestamp(ByteArrayOutputStream out, int prefix, long value) {
+            out.write((int) ((prefix << 4) | (((value >> 30) & 7) << 1) | 1));
+            out.write((int) (value >> 22));
+            out.write((int) ((((value >> 15) & 0x7F) << 1) | 1));
+            out.write((int) (value >> 7));
+            out.write((int) (((value & 0x7F) << 1) | 1));
+        }
+
+        private void packets(int pid, byte[] payload) {
+            int pos = 0;
+            boolean first = true;
+            while (pos < payload.length) {
+                byte[] packet = new byte[188];
+                packet[0] = 0x47;
+                packet[1] = (byte) ((first ? 0x40 : 0) | ((pid >> 8) & 0x1F));
+                packet[2] = (byte) pid;
+                int remaining = payload.length - pos;
+                int cc = continuity[pid]++ & 0x0F;
+                if (remaining < 184) {
+                    // Adaptation field stuffing fills the last packet
+                    int stuffing = 183 - remaining;
+                    packet[3] = (byte) (0x30 | cc);
+                    packet[4] = (byte) stuffing;
+                    if (stuffing > 0) {
+                        packet[5] = 0;
+                        for (int i = 6; i < 5 + stuffing; i++) packet[i] = (byte) 0xFF;
+                    }
+                    System.arraycopy(payload, pos, packet, 5 + stuffing, remaining);
+                    pos += remaining;
+                } else {
+                    packet[3] = (byte) (0x10 | cc);
+                    System.arraycopy(payload, pos, packet, 4, 184);
+                    pos += 184;
+                }
+                out.write(packet, 0, 188);
+                first = false;
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.reelview.app;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UrlClassifierTest {
+    private static final String[] URLS = {
+        "https://cdn.example.com/video/index.m3u8",
+        "https://cdn.example.com/video/INDEX.M3U8?token=abc",
+        "https://cdn.example.com/video/index.m3u8.bak",
+        "https://cdn.example.com/hls/segment.ts",
+        "https://cdn.example.com/HLS/segment.ts",
+        "https://cdn.example.com/hlsx/segment.ts",
+        "https://cdn.example.com/playlist/123",
+        "https://cdn.example.com/api/Playlist?id=1",
+        "https://cdn.example.com/manifest(format=m3u8-aapl)",
+        "https://cdn.example.com/v/Manifest",
+        "https://cdn.example.com/pl/abc.txt",
+        "https://cdn.example.com/apl/abc.txt",
+        "https://cdn.example.com/media/master.txt",
+        "https://cdn.example.com/media/master-720.txt",
+        // stream && m3u: both halves, either order, and each alone
+        "https://cdn.example.com/stream/list.m3u",
+        "https://cdn.example.com/m3u/live-STREAM",
+        "https://cdn.example.com/STREAMING/file.M3U",
+        "https://cdn.example.com/stream/video.mp4",
+        "https://cdn.example.com/m3u/video.mp4",
+        "https://cdn.example.com/strea/m3u",
+        // Overlapping prefixes must not hide a later match
+        "https://cdn.example.com/mastermaster.x",
+        "https://cdn.example.com/.m3.m3u8",
+        "https://cdn.example.com/hl/hls/",
+        // Non-ASCII characters reset the match
+        "https://cdn.example.com/vid\u00e9o/index.m3u8",
+        "https://cdn.example.com/.m3\u00e9u8",
+        "https://cdn.example.com/str\u00e9/am.m3u",
+        "https://cdn.example.com/images/logo.png",
+        "https://cdn.example.com/segment-001.ts",
+        "",
+    };
+
+    @Test
+    public void defaultsMatchPreviousContainsChain() {
+        UrlClassifier classifier = UrlClassifier.hlsDefaults();
+        for (String url : URLS) {
+            assertEquals(url, previousIsHlsStream(url), classifier.matches(url));
+        }
+    }
+
+    @Test
+    public void nullNeverMatches() {
+        assertFalse(UrlClassifier.hlsDefaults().matches(null));
+    }
+
+    @Test
+    public void allPatternsOfARuleAreRequired() {
+        UrlClassifier classifier = new UrlClassifier.Builder()
+            .matchAll("a1", "b2", "c3")
+            .build();
+
+        assertTrue(classifier.matches("x-c3-a1-b2"));
+        assertFalse(classifier.matches("x-c3-a1"));
+        assertFalse(classifier.matches("a1b"));
+    }
+
+    @Test
+    public void uppercasePatternsBuildUnderTurkishLocale() {
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            UrlClassifier classifier = new UrlClassifier.Builder()
+                .match("/PLAYLIST")
+                .matchAll("IMAGE", "HLS")
+                .build();
+
+            assertTrue(classifier.matches("https://cdn.example.com/playlist/1"));
+            assertTrue(classifier.matches("https://cdn.example.com/Image/HLS/1"));
+            assertFalse(classifier.matches("https://cdn.example.com/image/1"));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonAsciiPatterns() {
+        new UrlClassifier.Builder().match("vid\u00e9o").build();
+    }
+
+    /**
+     * ReelViewWebViewClient.isHLSStream before the classifier replaced it
+     */
+    private static boolean previousIsHlsStream(String url) {
+        String lowerUrl = url.toLowerCase(Locale.ROOT);
+        return lowerUrl.contains(".m3u8")
+            || lowerUrl.contains("/hls/")
+            || lowerUrl.contains("/playlist")
+            || lowerUrl.contains("/manifest")
+            || lowerUrl.contains("/pl/")
+            || lowerUrl.contains("/master.")
+            || (lowerUrl.contains("stream") && lowerUrl.contains("m3u"));
+    }
+}
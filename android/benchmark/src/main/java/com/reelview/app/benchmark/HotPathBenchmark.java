@@ -0,0 +1,264 @@
+package com.reelview.app.benchmark;
+
+import com.reelview.app.DirectBufferPool;
+import com.reelview.app.HlsPlaylist;
+import com.reelview.app.HttpTransport;
+import com.reelview.app.M3U8Parser;
+import com.reelview.app.SegmentFileWriter;
+import com.reelview.app.SegmentIO;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * JVM benchmarks for the playlist, segment fetch and merge hot paths
+ * Runs the app's own classes against synthetic playlists (100 to 20k entries), synthetic TS
+ * payloads and an in-process HTTP server, and reports throughput and allocation per operation
+ * for the measuring thread, so regressions show up before they reach a device.
+ *
+ * Build against the app sources and an android.jar (only Log and CookieManager are touched,
+ * and their stub failures are already caught), then run:
+ *   java -cp ... com.reelview.app.benchmark.HotPathBenchmark [name-filter]
+ */
+public class HotPathBenchmark {
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1000_000_000L;
+    private static final int[] PLAYLIST_SIZES = {100, 1000, 20000};
+    private static final int TS_PACKET = 188;
+    private static final int SEGMENT_BYTES = TS_PACKET * 10000;   // ~1.9 MB, a typical 4-6 s segment
+    private static final int MERGE_PARTS = 16;
+
+    /**
+     * One benchmarked operation; setUp runs before every operation and is not timed
+     */
+    interface Operation {
+        default void setUp() throws Exception {}
+        void run() throws Exception;
+    }
+
+    private static class Case {
+        final String name;
+        final long bytesPerOp;
+        final Operation operation;
+
+        Case(String name, long bytesPerOp, Operation operation) {
+            this.name = name;
+            this.bytesPerOp = bytesPerOp;
+            this.operation = operation;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        File workDir = createWorkDir();
+        HttpServer server = startServer();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        try {
+            List<Case> cases = buildCases(baseUrl, workDir);
+            System.out.println(String.format(Locale.US, "%-28s %12s %10s %14s",
+                "benchmark", "ops/s", "MB/s", "alloc B/op"));
+            for (Case c : cases) {
+                if (c.name.contains(filter)) {
+                    measure(c);
+                }
+            }
+        } finally {
+            server.stop(0);
+            deleteRecursively(workDir);
+        }
+    }
+
+    private static List<Case> buildCases(String baseUrl, File workDir) throws IOException {
+        List<Case> cases = new ArrayList<>();
+
+        for (int size : PLAYLIST_SIZES) {
+            final byte[] media = mediaPlaylist(size).getBytes(StandardCharsets.UTF_8);
+            cases.add(new Case("parse.media." + size, media.length, () -> {
+                HlsPlaylist playlist = M3U8Parser.parse(new ByteArrayInputStream(media),
+                    baseUrl + "/media.m3u8", baseUrl + "/media.m3u8");
+                if (playlist.segments.size() != size) throw new IllegalStateException("segment count");
+            }));
+        }
+
+        final byte[] master = masterPlaylist(12).getBytes(StandardCharsets.UTF_8);
+        cases.add(new Case("parse.master.12", master.length, () -> {
+            HlsPlaylist playlist = M3U8Parser.parse(new ByteArrayInputStream(master),
+                baseUrl + "/master.m3u8", baseUrl + "/master.m3u8");
+            if (playlist.variants.size() != 12) throw new IllegalStateException("variant count");
+        }));
+
+        // Same chain as HLSDownloader.downloadSegment, minus throttling
+        final File fetchTarget = new File(workDir, "fetch.part");
+        cases.add(new Case("fetch.segment", SEGMENT_BYTES, () -> {
+            HttpTransport.Request request = new HttpTransport.Request(baseUrl + "/seg.ts");
+            try (HttpTransport.Response response = HttpTransport.getShared().execute(request);
+                 RandomAccessFile out = new RandomAccessFile(fetchTarget, "rw");
+                 FileChannel channel = out.getChannel()) {
+                channel.truncate(0);
+                long copied = SegmentIO.copy(Channels.newChannel(response.body()), channel, 0,
+                    DirectBufferPool.getShared());
+                if (copied != SEGMENT_BYTES) throw new IllegalStateException("short segment");
+            }
+        }));
+
+        final byte[] payload = tsPayload(SEGMENT_BYTES);
+        final File partsDir = new File(workDir, "parts");
+        final File merged = new File(workDir, "merged.ts");
+        cases.add(new Case("merge.parts." + MERGE_PARTS, (long) SEGMENT_BYTES * MERGE_PARTS, new Operation() {
+            @Override
+            public void setUp() throws Exception {
+                if (!partsDir.exists() && !partsDir.mkdirs()) throw new IOException("parts dir");
+                for (int i = 0; i < MERGE_PARTS; i++) {
+                    try (OutputStream out = new FileOutputStream(new File(partsDir, "seg_" + i + ".part"))) {
+                        out.write(payload);
+                    }
+                }
+            }
+
+            @Override
+            public void run() throws Exception {
+                try (SegmentFileWriter writer = new SegmentFileWriter(merged, partsDir)) {
+                    for (int i = 0; i < MERGE_PARTS; i++) {
+                        writer.append(writer.partFile(i));
+                    }
+                }
+            }
+        }));
+        return cases;
+    }
+
+    private static void measure(Case c) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(c.operation);
+        }
+        long ops = 0;
+        long nanos = 0;
+        long allocated = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long[] result = iterate(c.operation);
+            ops += result[0];
+            nanos += result[1];
+            allocated += result[2];
+        }
+        double opsPerSecond = ops * 1e9 / nanos;
+        double mbPerSecond = opsPerSecond * c.bytesPerOp / (1024.0 * 1024.0);
+        System.out.println(String.format(Locale.US, "%-28s %12.1f %10.1f %14d",
+            c.name, opsPerSecond, mbPerSecond, allocated / Math.max(1, ops)));
+    }
+
+    /**
+     * Run operations for about one iteration period
+     * @return operations, timed nanoseconds, and bytes allocated by this thread while timed
+     */
+    private static long[] iterate(Operation operation) throws Exception {
+        long ops = 0;
+        long timed = 0;
+        long allocated = 0;
+        while (timed < ITERATION_NANOS) {
+            operation.setUp();
+            long allocatedBefore = threadAllocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            timed += System.nanoTime() - start;
+            allocated += threadAllocatedBytes() - allocatedBefore;
+            ops++;
+        }
+        return new long[] {ops, timed, allocated};
+    }
+
+    private static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Local stand-in for a CDN: playlists are not needed over HTTP, only segment bodies
+     */
+    private static HttpServer startServer() throws IOException {
+        final byte[] segment = tsPayload(SEGMENT_BYTES);
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/seg.ts", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "video/mp2t");
+            exchange.sendResponseHeaders(200, segment.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(segment);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    static String mediaPlaylist(int segments) {
+        StringBuilder playlist = new StringBuilder(segments * 48 + 128);
+        playlist.append("#EXTM3U\n#EXT-X-VERSION:3\n#EXT-X-TARGETDURATION:6\n#EXT-X-MEDIA-SEQUENCE:0\n")
+            .append("#EXT-X-PLAYLIST-TYPE:VOD\n");
+        for (int i = 0; i < segments; i++) {
+            if (i > 0 && i % 500 == 0) {
+                playlist.append("#EXT-X-DISCONTINUITY\n");
+            }
+            playlist.append("#EXTINF:").append(i % 3 == 0 ? "6.006" : "5.005").append(",\n")
+                .append("seg_").append(i).append(".ts\n");
+        }
+        return playlist.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    static String masterPlaylist(int variants) {
+        StringBuilder playlist = new StringBuilder("#EXTM3U\n");
+        for (int i = 0; i < variants; i++) {
+            int height = 144 + i * 90;
+            playlist.append("#EXT-X-STREAM-INF:BANDWIDTH=").append(300000 + i * 450000)
+                .append(",RESOLUTION=").append(height * 16 / 9).append('x').append(height)
+                .append(",CODECS=\"avc1.64001f,mp4a.40.2\"\n")
+                .append("https://cdn.example.com/v").append(i).append("/index.m3u8?token=abcdef\n");
+        }
+        return playlist.toString();
+    }
+
+    /**
+     * Transport stream packets with sync bytes and random payload
+     */
+    static byte[] tsPayload(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        for (int i = 0; i + TS_PACKET <= length; i += TS_PACKET) {
+            data[i] = 0x47;
+            data[i + 1] = 0x01;
+            data[i + 2] = 0x00;
+        }
+        return data;
+    }
+
+    private static File createWorkDir() throws IOException {
+        File dir = File.createTempFile("reelview-bench", "");
+        if (!dir.delete() || !dir.mkdirs()) throw new IOException("Cannot create work directory");
+        return dir;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}